@@ -0,0 +1,233 @@
+/*
+ * ActivityGenerator.java
+ *
+ * Generador de actividades FIT sintéticas para pruebas de carga y escala.
+ *
+ * Uso típico:
+ *   java ar.fit.ActivityGenerator salida.fit --records=1000000 --seed=7
+ *   java ar.fit.ActivityGenerator salida.fit --shape=outback --laps=200 --dropout=0.001
+ *
+ * Copyright (c) 2026 Daniel Sappa
+ * Licenciado bajo la Licencia MIT.
+ */
+
+package ar.fit;
+
+import java.io.File;
+import java.util.Random;
+import java.util.function.Consumer;
+
+import com.garmin.fit.DateTime;
+import com.garmin.fit.FileEncoder;
+import com.garmin.fit.FileIdMesg;
+import com.garmin.fit.Manufacturer;
+import com.garmin.fit.RecordMesg;
+import com.garmin.fit.SessionMesg;
+import com.garmin.fit.Sport;
+import com.garmin.fit.SportMesg;
+
+/**
+ * Sintetiza actividades con los mismos mensajes que escribe SegmentWriter.
+ *
+ * El resultado depende solo de los parámetros y de la semilla: dos
+ * ejecuciones con los mismos argumentos generan archivos idénticos,
+ * por lo que pueden compartirse y reproducirse en benchmarks.
+ *
+ * Formas disponibles:
+ *  - loop:    vueltas a un circuito elíptico de lapMeters
+ *  - outback: ida y vuelta sobre una recta de lapMeters / 2
+ */
+public class ActivityGenerator {
+
+    /** 2026-01-01T00:00:00Z en segundos FIT (desde 1989-12-31 UTC). */
+    static final long BASE_TIMESTAMP = 1_136_160_000L;
+
+    String shape = "loop";
+    long seed = 1;
+    int records = 3600;
+    int hz = 1;
+    double lapMeters = 2000.0;
+    double speed = 10.0;        // m/s
+    double noise = 2.0;         // desvío del ruido GPS (m)
+    double dropout = 0.0;       // probabilidad por record de perder el GPS
+    boolean hr = true;
+    boolean cadence = true;
+    boolean altitude = true;
+    double lat = -34.6037;      // origen del recorrido
+    double lon = -58.3816;
+
+    static ActivityGenerator parse(String[] args) {
+        ActivityGenerator g = new ActivityGenerator();
+        Integer laps = null;
+        Integer duration = null;
+        for (String a : args) {
+            if (a.startsWith("--shape=")) g.shape = a.substring(8);
+            if (a.startsWith("--seed=")) g.seed = Long.parseLong(a.substring(7));
+            if (a.startsWith("--records=")) g.records = Integer.parseInt(a.substring(10));
+            if (a.startsWith("--duration=")) duration = Integer.parseInt(a.substring(11));
+            if (a.startsWith("--laps=")) laps = Integer.parseInt(a.substring(7));
+            if (a.startsWith("--hz=")) g.hz = Math.max(1, Integer.parseInt(a.substring(5)));
+            if (a.startsWith("--lap=")) g.lapMeters = Double.parseDouble(a.substring(6));
+            if (a.startsWith("--speed=")) g.speed = Double.parseDouble(a.substring(8));
+            if (a.startsWith("--noise=")) g.noise = Double.parseDouble(a.substring(8));
+            if (a.startsWith("--dropout=")) g.dropout = Double.parseDouble(a.substring(10));
+            if (a.startsWith("--channels=")) {
+                String ch = "," + a.substring(11) + ",";
+                g.hr = ch.contains(",hr,");
+                g.cadence = ch.contains(",cadence,");
+                g.altitude = ch.contains(",altitude,");
+            }
+            if (a.startsWith("--origin=")) {
+                String[] p = a.substring(9).split(",");
+                g.lat = Double.parseDouble(p[0]);
+                g.lon = Double.parseDouble(p[1]);
+            }
+        }
+        // --duration y --laps se traducen a cantidad de records
+        if (duration != null) g.records = duration * g.hz;
+        if (laps != null) g.records = (int) Math.ceil(laps * g.lapMeters / g.speed * g.hz);
+        if (!g.shape.equals("loop") && !g.shape.equals("outback"))
+            throw new IllegalArgumentException("Forma desconocida: " + g.shape);
+        return g;
+    }
+
+    /** Punto del recorrido donde empieza cada vuelta (grados). */
+    double startLat() {
+        return lat;
+    }
+
+    double startLon() {
+        return lon;
+    }
+
+    /**
+     * Genera los records en orden.
+     *
+     * Durante un corte de GPS (--dropout) los records se emiten sin
+     * posición, como hacen los dispositivos reales en túneles.
+     *
+     * A más de 1 Hz el instante de cada record conserva la fracción de
+     * segundo (DateTime con timestamp fraccional): el campo timestamp
+     * del FIT, en segundos enteros, se repite dentro de cada segundo
+     * como en el archivo de un dispositivo real.
+     */
+    void generate(Consumer<RecordMesg> sink) {
+        Random rnd = new Random(seed);
+        double ky = GeoGrid.METERS_PER_DEG;
+        double kx = ky * Math.cos(Math.toRadians(lat));
+
+        // Elipse 1.6:1 con perímetro lapMeters (aproximación de Ramanujan)
+        double ratio = 1.6;
+        double unit = Math.PI * (3 * (ratio + 1) - Math.sqrt((3 * ratio + 1) * (ratio + 3)));
+        double b = lapMeters / unit;
+        double a = ratio * b;
+
+        double s = 0;               // distancia recorrida (m)
+        double heart = 120;
+        int lost = 0;               // records restantes sin GPS
+
+        for (int i = 0; i < records; i++) {
+            double t = (double) i / hz;
+            double v = Math.max(0, speed * (1 + 0.1 * Math.sin(t / 60.0)) + rnd.nextGaussian() * 0.2);
+            s += v / hz;
+
+            double lapPos = (s % lapMeters) / lapMeters;
+            double x, y, alt;
+            if (shape.equals("loop")) {
+                double ang = 2 * Math.PI * lapPos;
+                // La vuelta arranca en el origen, sobre el extremo del eje mayor
+                x = a * (Math.cos(ang) - 1);
+                y = b * Math.sin(ang);
+                alt = 20 + 10 * Math.sin(ang);
+            } else {
+                double along = lapMeters / 2 * (1 - Math.abs(1 - 2 * lapPos));
+                x = along * 0.5;
+                y = along * 0.866;
+                alt = 20 + 0.05 * along;
+            }
+
+            if (lost == 0 && dropout > 0 && rnd.nextDouble() < dropout) {
+                lost = (5 + rnd.nextInt(26)) * hz;
+            }
+
+            RecordMesg r = new RecordMesg();
+            long whole = (long) Math.floor(t);
+            r.setTimestamp(new DateTime(BASE_TIMESTAMP + whole, t - whole));
+            if (lost > 0) {
+                lost--;
+            } else {
+                x += rnd.nextGaussian() * noise;
+                y += rnd.nextGaussian() * noise;
+                r.setPositionLat((int) ((lat + y / ky) / Track.DEG));
+                r.setPositionLong((int) ((lon + x / kx) / Track.DEG));
+            }
+            r.setSpeed((float) v);
+            if (hr) {
+                heart = Math.max(90, Math.min(190, heart + rnd.nextGaussian() + (150 - heart) * 0.01));
+                r.setHeartRate((short) Math.round(heart));
+            }
+            if (cadence) r.setCadence((short) (v < 1 ? 0 : 80 + rnd.nextInt(16)));
+            if (altitude) r.setAltitude((float) alt);
+            sink.accept(r);
+        }
+    }
+
+    /**
+     * Track en memoria con los mismos trackpoints que tendría el archivo
+     * generado al decodificarlo (los records sin GPS se descartan).
+     */
+    Track track() {
+        Track t = new Track(records);
+        int[] record = { 0 };
+        generate(r -> {
+            int i = record[0]++;
+            if (TrackReader.isTrackpoint(r)) TrackReader.addRecord(t, i, r);
+        });
+        return t;
+    }
+
+    /**
+     * Escribe la actividad completa como archivo FIT.
+     */
+    void write(File out) {
+        FileEncoder encoder = new FileEncoder(out);
+
+        FileIdMesg fileId = new FileIdMesg();
+        fileId.setType(com.garmin.fit.File.ACTIVITY);
+        fileId.setManufacturer(Manufacturer.DEVELOPMENT);
+        fileId.setTimeCreated(new DateTime(BASE_TIMESTAMP));
+        encoder.write(fileId);
+
+        SportMesg sport = new SportMesg();
+        sport.setSport(Sport.CYCLING);
+        encoder.write(sport);
+
+        generate(encoder::write);
+
+        float elapsed = (records - 1) / (float) hz;
+        SessionMesg session = new SessionMesg();
+        session.setSport(Sport.CYCLING);
+        session.setStartTime(new DateTime(BASE_TIMESTAMP));
+        session.setTotalElapsedTime(elapsed);
+        session.setTotalTimerTime(elapsed);
+        encoder.write(session);
+
+        encoder.close();
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 1 || args[0].startsWith("--")) {
+            System.err.println("Uso:");
+            System.err.println("java ar.fit.ActivityGenerator salida.fit [--shape=loop|outback] [--seed=1]");
+            System.err.println("    [--records=N | --duration=s | --laps=N] [--hz=1] [--lap=2000] [--speed=10]");
+            System.err.println("    [--noise=2] [--dropout=0] [--channels=hr,cadence,altitude] [--origin=lat,lon]");
+            System.exit(1);
+        }
+
+        ActivityGenerator g = parse(args);
+        g.write(new File(args[0]));
+
+        System.out.println("FIT generado: " + args[0]);
+        System.out.println("Records: " + g.records);
+    }
+}
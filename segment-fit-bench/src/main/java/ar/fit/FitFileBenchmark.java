@@ -0,0 +1,98 @@
+/*
+ * FitFileBenchmark.java
+ *
+ * Benchmarks de E/S FIT: decodificación con el listener de records,
+ * decodificación rápida (FitRecordDecoder), el loop de escritura
+ * con FileEncoder y la segmentación completa en memoria con la API de
+ * segment-fit-core (TrackReader → SegmentDetector → SegmentWriter).
+ *
+ * Copyright (c) 2026 Daniel Sappa
+ * Licenciado bajo la Licencia MIT.
+ */
+
+package ar.fit;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FitFileBenchmark {
+
+    /** FIT de entrada para decodificar. */
+    private File input;
+
+    /** Bytes de input, para medir la decodificación sin E/S. */
+    private ByteBuffer inputBytes;
+
+    /** Destino del benchmark de escritura. */
+    private File output;
+
+    /** Pipeline en memoria: lector, detector y salida reutilizados. */
+    private final TrackReader reader = new TrackReader(true);
+    private final SegmentWriter writer = new SegmentWriter();
+    private SegmentDetector detector;
+    private final ByteArrayOutputStream sink = new ByteArrayOutputStream(1 << 20);
+
+    @Setup(Level.Trial)
+    public void setUp(TrackState s) throws Exception {
+        input = File.createTempFile("segmentfit-bench", ".fit");
+        output = File.createTempFile("segmentfit-bench", "_out.fit");
+        SegmentWriter.writeSegment(s.track, 0, s.track.size() - 1, input.getPath());
+        inputBytes = ByteBuffer.wrap(Files.readAllBytes(input.toPath()));
+        detector = SegmentDetector.loop(s.generator.startLat(), s.generator.startLon(), 10.0, false);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(input.toPath());
+        Files.deleteIfExists(output.toPath());
+    }
+
+    @Benchmark
+    public Track decode() throws Exception {
+        return new TrackReader().read(input.getPath());
+    }
+
+    @Benchmark
+    public Track decodeFast() {
+        return FitRecordDecoder.decode(inputBytes);
+    }
+
+    @Benchmark
+    public long encode(TrackState s) {
+        SegmentWriter.writeSegment(s.track, 0, s.track.size() - 1, output.getPath());
+        return output.length();
+    }
+
+    /** Decodificación, loop y passthrough sin tocar el disco. */
+    @Benchmark
+    public int segmentInMemory() throws IOException {
+        Track t = reader.read(inputBytes);
+        SegmentDetector.Span span = detector.detect(t);
+        sink.reset();
+        writer.write(t, span, inputBytes, sink);
+        return sink.size();
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * MatchBenchmark.java
+ *
+ * Benchmarks de búsqueda: punto más cercano, pasos por un punto y loop.
+ *
+ * Copyright (c) 2026 Daniel Sappa
+ * Licenciado bajo la Licencia MIT.
+ */
+
+package ar.fit;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MatchBenchmark {
+
+    @Benchmark
+    public int nearestIndex(TrackState s) {
+        return SegmentDetector.nearestIndex(s.track, DistanceKernel.at(s.generator.startLat(), s.generator.startLon()),
+                SegmentDetector.PARALLEL_THRESHOLD);
+    }
+
+    @Benchmark
+    public List<Integer> allPasses(TrackState s) {
+        return SegmentDetector.allPasses(s.track, DistanceKernel.at(s.generator.startLat(), s.generator.startLon()),
+                10.0, SegmentDetector.PARALLEL_THRESHOLD);
+    }
+
+    /** nearestIndex sin ForkJoin, como referencia para tracks largos. */
+    @Benchmark
+    public SegmentDetector.Nearest nearestIndexSequential(TrackState s) {
+        return SegmentDetector.nearest(s.track, DistanceKernel.at(s.generator.startLat(), s.generator.startLon()),
+                0, s.track.size());
+    }
+
+    @Benchmark
+    public List<Integer> allPassesSequential(TrackState s) {
+        List<Integer> idxs = new ArrayList<>();
+        SegmentDetector.passes(s.track, DistanceKernel.at(s.generator.startLat(), s.generator.startLon()),
+                10.0, 0, s.track.size(), idxs);
+        return idxs;
+    }
+
+    @Benchmark
+    public SegmentDetector.Span detectLoop(TrackState s) {
+        return SegmentDetector.loop(s.generator.startLat(), s.generator.startLon(), 10.0, false)
+                .detect(s.track);
+    }
+
+    @Benchmark
+    public SegmentDetector.Span detectLoopVertex(TrackState s) {
+        return SegmentDetector.loop(s.generator.startLat(), s.generator.startLon(), 10.0, true)
+                .detect(s.track);
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * ScanBenchmark.java
+ *
+ * Benchmarks de los recorridos lineales: escalar contra Vector API.
+ *
+ * Requiere JDK 17+ y compilar con el perfil vector (desde la raíz):
+ *   mvn -Pvector package
+ *   java -jar segment-fit-bench/target/benchmarks.jar ScanBenchmark
+ *
+ * Copyright (c) 2026 Daniel Sappa
+ * Licenciado bajo la Licencia MIT.
+ */
+
+package ar.fit;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class ScanBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Scan {
+
+        @Param({"scalar", "vector"})
+        public String kernel;
+
+        TrackScan scan;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            scan = kernel.equals("vector") ? TrackScan.vector() : new TrackScan.Scalar();
+            if (scan == null)
+                throw new IllegalStateException("VectorTrackScan no disponible (compilar con -Pvector)");
+        }
+    }
+
+    @Benchmark
+    public SegmentDetector.Nearest nearest(TrackState s, Scan scan) {
+        return scan.scan.nearest(s.track, DistanceKernel.at(s.generator.startLat(), s.generator.startLon()),
+                0, s.track.size());
+    }
+
+    @Benchmark
+    public List<Integer> passes(TrackState s, Scan scan) {
+        List<Integer> idxs = new ArrayList<>();
+        scan.scan.passes(s.track, DistanceKernel.at(s.generator.startLat(), s.generator.startLon()),
+                10.0, 0, s.track.size(), idxs);
+        return idxs;
+    }
+}
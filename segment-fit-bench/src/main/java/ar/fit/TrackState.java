@@ -0,0 +1,41 @@
+/*
+ * TrackState.java
+ *
+ * Estado JMH compartido: un track sintético por combinación de parámetros,
+ * generado con ActivityGenerator (circuito de 2 km a 10 m/s, ruido de 2 m).
+ *
+ * Copyright (c) 2026 Daniel Sappa
+ * Licenciado bajo la Licencia MIT.
+ */
+
+package ar.fit;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+@State(Scope.Benchmark)
+public class TrackState {
+
+    /** Cantidad de trackpoints. */
+    @Param({ "10000", "100000", "1000000" })
+    public int points;
+
+    /** Frecuencia de muestreo (Hz). */
+    @Param({ "1", "5" })
+    public int hz;
+
+    ActivityGenerator generator;
+    Track track;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        generator = new ActivityGenerator();
+        generator.seed = 42;
+        generator.records = points;
+        generator.hz = hz;
+        track = generator.track();
+    }
+}
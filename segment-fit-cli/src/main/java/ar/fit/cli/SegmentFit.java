@@ -0,0 +1,629 @@
+/*
+ * SegmentFit.java
+ *
+ * Herramienta para:
+ *  - Leer un archivo .FIT de Garmin
+ *  - Detectar un segmento definido por GPS
+ *      * start -> end
+ *      * loop (detección de circuito y vueltas completas)
+ *  - Extraer solo ese tramo
+ *  - Generar un nuevo archivo .FIT válido con los records del segmento
+ *
+ * Requisitos:
+ *  - Java 11+ (Java 17 para el perfil vector)
+ *  - fit-java-sdk (probado con 21.188.0)
+ *
+ * Uso típico:
+ *   java ar.fit.cli.SegmentFit actividad.fit --start=lat,lon --end=lat,lon [--stream]
+ *   java ar.fit.cli.SegmentFit actividad.fit --start=lat,lon --loop [--radius=10] [--match=segment|vertex] [--stream]
+ *   java ar.fit.cli.SegmentFit actividad.fit --start=lat,lon --laps[=split]
+ *   java ar.fit.cli.SegmentFit actividad.fit --catalog=segmentos.csv [--radius=10]
+ *   java ar.fit.cli.SegmentFit actividad.fit --best=5km,20km,40km,20min
+ *   java ar.fit.cli.SegmentFit --batch=actividades/ --start=lat,lon --end=lat,lon [--threads=8]
+ *   java ar.fit.cli.SegmentFit --serve=8080
+ *
+ * Autor: Daniel Sappa
+ * Copyright (c) 2026 Daniel Sappa
+ *
+ * Licenciado bajo la Licencia MIT.
+ * Ver el archivo LICENSE para más detalles.
+ */
+
+package ar.fit.cli;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import ar.fit.BestEfforts;
+import ar.fit.Laps;
+import ar.fit.Metrics;
+import ar.fit.SegmentCatalog;
+import ar.fit.SegmentDetector;
+import ar.fit.SegmentJobEvent;
+import ar.fit.SegmentWriter;
+import ar.fit.Track;
+import ar.fit.TrackReader;
+
+/**
+ * Línea de comandos sobre la biblioteca (segment-fit-core): lee los
+ * parámetros, recorre los archivos y arma con TrackReader,
+ * SegmentDetector y SegmentWriter cada segmentación. Usa solo la API
+ * pública de ar.fit.
+ */
+public class SegmentFit {
+
+    /**
+     * Parámetros de segmentación de la línea de comandos.
+     * Se comparten entre todos los archivos de un batch.
+     */
+    static final class Options {
+        double startLat, startLon;
+        double endLat, endLon;
+        boolean loop;
+        boolean laps;           // una salida con LapMesg por vuelta (--laps)
+        boolean splitLaps;      // un FIT por vuelta (--laps=split)
+        boolean stream;
+        double radius = 10.0;
+        boolean vertexMatch;
+        boolean exactDistance;  // Haversine en todas las comparaciones (--distance=exact)
+        boolean simplify;       // simplificar la plantilla del loop (--simplify[=m])
+        double simplifyTolerance;
+        boolean parallel = true; // repartir cada track en hilos (el batch lo desactiva)
+        boolean passthrough;    // copiar los bytes originales de los records
+        boolean rebaseDistance; // distance de los records desde 0 (con passthrough)
+        String batch;           // directorio o glob (--batch=)
+        String catalogFile;     // catálogo de segmentos (--catalog=)
+        SegmentCatalog catalog;
+        List<BestEfforts.Window> best;  // ventanas de mejores esfuerzos (--best=)
+        int threads = Runtime.getRuntime().availableProcessors();
+        int serve;              // puerto del modo servidor (--serve[=8080])
+        boolean fastDecode;     // FitRecordDecoder en lugar del SDK (--fast-decode)
+        boolean cache;          // caché de tracks decodificados (--cache[=dir])
+        Path cacheDir;          // sin directorio, cada sidecar junto a su FIT
+        Metrics metrics = Metrics.NONE; // con --metrics, compartidas por todo el batch
+        String metricsFile;     // reporte de --metrics=archivo (sin archivo, stderr)
+
+        static Options parse(String[] args) {
+            Options o = new Options();
+            for (String a : args) {
+                if (a.startsWith("--start=")) {
+                    String[] p = a.substring(8).split(",");
+                    o.startLat = Double.parseDouble(p[0]);
+                    o.startLon = Double.parseDouble(p[1]);
+                }
+                if (a.startsWith("--end=")) {
+                    String[] p = a.substring(6).split(",");
+                    o.endLat = Double.parseDouble(p[0]);
+                    o.endLon = Double.parseDouble(p[1]);
+                }
+                if (a.equals("--loop")) {
+                    o.loop = true;
+                }
+                if (a.equals("--laps") || a.equals("--laps=split")) {
+                    o.loop = true;
+                    o.laps = true;
+                    o.splitLaps = a.endsWith("=split");
+                }
+                if (a.equals("--stream")) {
+                    o.stream = true;
+                }
+                if (a.startsWith("--radius=")) {
+                    o.radius = Double.parseDouble(a.substring(9));
+                }
+                if (a.startsWith("--distance=")) {
+                    o.exactDistance = a.substring(11).equals("exact");
+                }
+                if (a.equals("--fast-decode")) {
+                    o.fastDecode = true;
+                }
+                if (a.equals("--cache")) {
+                    o.cache = true;
+                }
+                if (a.startsWith("--cache=")) {
+                    o.cache = true;
+                    o.cacheDir = Paths.get(a.substring(8));
+                }
+                if (a.equals("--simplify")) {
+                    o.simplify = true;
+                }
+                if (a.startsWith("--simplify=")) {
+                    o.simplify = true;
+                    o.simplifyTolerance = Double.parseDouble(a.substring(11));
+                }
+                if (a.equals("--metrics")) {
+                    o.metrics = new Metrics();
+                }
+                if (a.startsWith("--metrics=")) {
+                    o.metrics = new Metrics();
+                    o.metricsFile = a.substring(10);
+                }
+                if (a.equals("--passthrough")) {
+                    o.passthrough = true;
+                }
+                if (a.equals("--rebase-distance")) {
+                    o.rebaseDistance = true;
+                }
+                if (a.startsWith("--match=")) {
+                    String match = a.substring(8);
+                    if (!match.equals("segment") && !match.equals("vertex"))
+                        throw new IllegalArgumentException("--match debe ser segment o vertex: " + match);
+                    o.vertexMatch = match.equals("vertex");
+                }
+                if (a.startsWith("--batch=")) {
+                    o.batch = a.substring(8);
+                }
+                if (a.startsWith("--threads=")) {
+                    o.threads = Math.max(1, Integer.parseInt(a.substring(10)));
+                }
+                if (a.startsWith("--catalog=")) {
+                    o.catalogFile = a.substring(10);
+                }
+                if (a.equals("--serve")) {
+                    o.serve = 8080;
+                }
+                if (a.startsWith("--serve=")) {
+                    o.serve = Integer.parseInt(a.substring(8));
+                }
+                if (a.startsWith("--best=")) {
+                    o.best = BestEfforts.parse(a.substring(7));
+                }
+            }
+            return o;
+        }
+
+        TrackReader reader() {
+            return new TrackReader(fastDecode, cache, cacheDir).metrics(metrics);
+        }
+
+        /** Detector del modo inicio → fin o --loop. */
+        SegmentDetector detector() {
+            SegmentDetector d = loop
+                    ? SegmentDetector.loop(startLat, startLon, radius, vertexMatch)
+                    : SegmentDetector.between(startLat, startLon, endLat, endLon, radius);
+            d = d.exactDistance(exactDistance).parallel(parallel).metrics(metrics);
+            return simplify ? d.simplify(simplifyTolerance) : d;
+        }
+
+        SegmentWriter writer() {
+            return new SegmentWriter(rebaseDistance).metrics(metrics);
+        }
+
+        /** FIT original para los records con --passthrough, o null. */
+        String original(String fitFile) {
+            return passthrough ? fitFile : null;
+        }
+
+        /** Modo para SegmentJobEvent; +stream con --stream. */
+        String mode() {
+            String mode;
+            if (catalog != null) mode = "catalog";
+            else if (best != null) mode = "best";
+            else if (laps) mode = splitLaps ? "laps-split" : "laps";
+            else if (loop) mode = "loop";
+            else mode = "start-end";
+            return stream ? mode + "+stream" : mode;
+        }
+    }
+
+    /**
+     * Resultado de segmentar un archivo.
+     */
+    static final class Result {
+        final String file;
+        String out;
+        int points;
+        double seconds;         // duración con los extremos interpolados
+        long millis;
+        String error;
+
+        Result(String file) {
+            this.file = file;
+        }
+    }
+
+    /**
+     * Nombre del archivo de salida para un FIT de entrada.
+     * Reemplaza solo la extensión final (.fit o .FIT), así nunca
+     * coincide con el archivo de entrada.
+     */
+    static String outputName(String fitFile) {
+        String base = fitFile.toLowerCase().endsWith(".fit")
+                ? fitFile.substring(0, fitFile.length() - 4)
+                : fitFile;
+        return base + "_segmento.fit";
+    }
+
+    /**
+     * Segmenta un archivo completo: decodificación, detección y escritura,
+     * registrando un SegmentJobEvent si hay una grabación JFR activa.
+     */
+    static Result segment(String fitFile, Options o) throws Exception {
+        o.metrics.increment(Metrics.Counter.FILES);
+        SegmentJobEvent job = SegmentJobEvent.start(fitFile, o.mode(), o.radius);
+        try {
+            Result res;
+            if (o.catalog != null) {
+                res = segmentCatalog(fitFile, o);
+            } else if (o.best != null) {
+                res = segmentBest(fitFile, o);
+            } else if (o.laps) {
+                res = segmentLaps(fitFile, o);
+            } else {
+                res = segmentSpan(fitFile, o);
+            }
+            job.points(res.points);
+            return res;
+        } catch (Exception e) {
+            job.error(e);
+            throw e;
+        } finally {
+            job.finish();
+        }
+    }
+
+    /**
+     * Modo inicio → fin o --loop: un solo FIT con el tramo encontrado.
+     */
+    static Result segmentSpan(String fitFile, Options o) throws Exception {
+        Result res = new Result(fitFile);
+        long t0 = System.nanoTime();
+
+        /** Determinar segmento */
+        Track points;
+        SegmentDetector.Span span;
+
+        if (o.stream) {
+            /**
+             * Solo el tramo (y con --loop la primera vuelta) queda en
+             * memoria.
+             */
+            SegmentDetector.Streamed s = o.detector().detect(fitFile);
+            points = s.points;
+            span = s.span;
+
+        } else {
+            /**
+             * Track con todos los puntos del FIT original.
+             */
+            points = o.reader().read(fitFile);
+            span = o.detector().detect(points);
+        }
+
+        /**
+         * Creación del nuevo archivo FIT.
+         */
+        res.out = outputName(fitFile);
+        o.writer().write(o.original(fitFile), points, span.i0, span.i1, span.seconds, res.out);
+
+        res.points = span.points();
+        res.seconds = span.seconds;
+        res.millis = (System.nanoTime() - t0) / 1_000_000;
+        return res;
+    }
+
+    /**
+     * Modo catálogo: una sola decodificación y una sola pasada sobre el
+     * track encuentran todos los segmentos del catálogo recorridos.
+     * Se escribe un FIT por cada segmento encontrado.
+     */
+    static Result segmentCatalog(String fitFile, Options o) throws Exception {
+        Result res = new Result(fitFile);
+        long t0 = System.nanoTime();
+
+        Track points = o.reader().read(fitFile);
+        List<SegmentCatalog.Match> matches;
+        try (Metrics.Scope m = o.metrics.phase(Metrics.Phase.MATCH)) {
+            matches = o.catalog.match(points);
+        }
+
+        String base = outputName(fitFile);
+        base = base.substring(0, base.length() - ".fit".length());
+        Map<String, Integer> seen = new HashMap<>();
+        StringBuilder report = new StringBuilder();
+        SegmentWriter writer = o.writer();
+
+        for (SegmentCatalog.Match m : matches) {
+            // Nombre de archivo seguro; repeticiones numeradas (_2, _3...)
+            String slug = m.name.replaceAll("[^\\p{L}\\p{N}._-]+", "_");
+            int n = seen.merge(slug, 1, Integer::sum);
+            String out = base + "_" + slug + (n > 1 ? "_" + n : "") + ".fit";
+            writer.write(o.original(fitFile), points, m.i0, m.i1, out);
+
+            res.points += m.i1 - m.i0 + 1;
+            report.append(String.format("%n  %s: %d s, %d puntos -> %s",
+                    m.name, points.timestamp(m.i1) - points.timestamp(m.i0), m.i1 - m.i0 + 1, out));
+        }
+
+        res.out = matches.size() + " segmentos" + report;
+        res.millis = (System.nanoTime() - t0) / 1_000_000;
+        return res;
+    }
+
+    /**
+     * Modo --best: el mejor tramo de cada ventana, buscado en una sola
+     * pasada. Se escribe un FIT por ventana encontrada.
+     */
+    static Result segmentBest(String fitFile, Options o) throws Exception {
+        Result res = new Result(fitFile);
+        long t0 = System.nanoTime();
+
+        Track points = o.reader().read(fitFile);
+        List<BestEfforts.Effort> efforts;
+        try (Metrics.Scope m = o.metrics.phase(Metrics.Phase.MATCH)) {
+            efforts = BestEfforts.search(points, o.best);
+        }
+
+        String base = outputName(fitFile);
+        base = base.substring(0, base.length() - ".fit".length());
+        StringBuilder report = new StringBuilder();
+        SegmentWriter writer = o.writer();
+
+        for (BestEfforts.Effort e : efforts) {
+            String out = base + "_mejor_" + e.window.label + ".fit";
+            writer.write(o.original(fitFile), points, e.i0, e.i1, out);
+
+            res.points += e.i1 - e.i0 + 1;
+            report.append(String.format("%n  %s: %d s, %.1f m, FC media %s -> %s",
+                    e.window.label, e.seconds, e.distance,
+                    Double.isNaN(e.avgHr) ? "-" : String.format("%.0f", e.avgHr), out));
+        }
+
+        res.out = efforts.size() + " de " + o.best.size() + " ventanas" + report;
+        res.millis = (System.nanoTime() - t0) / 1_000_000;
+        return res;
+    }
+
+    /**
+     * Modo --laps: cada vuelta completa por separado, con sus parciales.
+     * Escribe un FIT con un LapMesg por vuelta, o con --laps=split un
+     * FIT por vuelta.
+     */
+    static Result segmentLaps(String fitFile, Options o) throws Exception {
+        Result res = new Result(fitFile);
+        long t0 = System.nanoTime();
+
+        Track points = o.reader().read(fitFile);
+        List<Laps.Lap> laps = o.detector().laps(points);
+
+        String base = outputName(fitFile);
+        SegmentWriter writer = o.writer();
+        StringBuilder report = new StringBuilder();
+
+        for (int k = 0; k < laps.size(); k++) {
+            Laps.Lap lap = laps.get(k);
+            String out = base;
+            if (o.splitLaps) {
+                out = base.substring(0, base.length() - ".fit".length()) + "_vuelta" + (k + 1) + ".fit";
+                writer.write(o.original(fitFile), points, lap.i0, lap.i1, lap.seconds, out);
+                res.points += lap.i1 - lap.i0 + 1;
+            }
+            report.append(String.format("%n  Vuelta %d: %.2f s, %.1f m, FC media %s -> %s",
+                    k + 1, lap.seconds, lap.distance,
+                    Double.isNaN(lap.avgHr) ? "-" : String.format("%.0f", lap.avgHr), out));
+        }
+
+        if (!o.splitLaps) {
+            // Los LapMesg requieren reconstruir los records (sin passthrough)
+            writer.writeLaps(points, laps, base);
+            res.points = laps.get(laps.size() - 1).i1 - laps.get(0).i0 + 1;
+        }
+
+        res.out = laps.size() + " vueltas" + report;
+        res.millis = (System.nanoTime() - t0) / 1_000_000;
+        return res;
+    }
+
+    /**
+     * Archivos de entrada de un batch.
+     *
+     * Acepta un directorio (todos sus .fit, sin recursión) o un glob
+     * como "actividades/2026-*.fit". Se excluyen las salidas previas
+     * de cualquier modo (todas llevan _segmento en el nombre: _segmento.fit,
+     * _segmento_<nombre>.fit, _segmento_mejor_5km.fit, _segmento_vueltaN.fit)
+     * y el resultado se ordena por nombre.
+     */
+    static List<String> batchFiles(String spec) throws IOException {
+        Path dir = Paths.get(spec);
+        List<String> files = new ArrayList<>();
+
+        if (Files.isDirectory(dir)) {
+            try (Stream<Path> s = Files.list(dir)) {
+                s.filter(p -> p.getFileName().toString().toLowerCase().endsWith(".fit"))
+                        .forEach(p -> files.add(p.toString()));
+            }
+        } else {
+            // Base del recorrido: el prefijo del glob sin comodines
+            int wild = spec.length();
+            for (char c : new char[] { '*', '?', '[', '{' }) {
+                int at = spec.indexOf(c);
+                if (at >= 0) wild = Math.min(wild, at);
+            }
+            int slash = spec.lastIndexOf('/', wild);
+            Path base = Paths.get(slash < 0 ? "" : spec.substring(0, slash + 1));
+            PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + spec);
+            if (!Files.isDirectory(base)) return files;
+            try (Stream<Path> s = Files.walk(base)) {
+                s.filter(p -> Files.isRegularFile(p) && matcher.matches(p))
+                        .forEach(p -> files.add(p.toString()));
+            }
+        }
+
+        files.removeIf(f -> Paths.get(f).getFileName().toString().toLowerCase().contains("_segmento"));
+        Collections.sort(files);
+        return files;
+    }
+
+    /**
+     * Modo batch: segmenta varios archivos en una sola JVM usando
+     * un pool fijo de hilos, e imprime un resumen al terminar.
+     *
+     * Un Error (por ejemplo OutOfMemoryError) en cualquier archivo
+     * cancela el resto y se propaga: el heap puede quedar inconsistente.
+     *
+     * @return cantidad de archivos con error, o -1 si no hay archivos
+     */
+    static int runBatch(Options o) throws Exception {
+        List<String> files = batchFiles(o.batch);
+        if (files.isEmpty()) {
+            System.err.println("No se encontraron archivos .fit en " + o.batch);
+            return -1;
+        }
+
+        long t0 = System.nanoTime();
+        int threads = Math.min(o.threads, files.size());
+        if (threads > 1) o.parallel = false;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<Result>> jobs = new ArrayList<>();
+        for (String f : files) {
+            jobs.add(pool.submit(() -> {
+                try {
+                    return segment(f, o);
+                } catch (Exception e) {
+                    Result r = new Result(f);
+                    r.error = e.getMessage() != null ? e.getMessage() : e.toString();
+                    return r;
+                }
+            }));
+        }
+        pool.shutdown();
+
+        /**
+         * Resumen en el orden de entrada.
+         */
+        int failed = 0;
+        long points = 0;
+        for (Future<Result> job : jobs) {
+            Result r;
+            try {
+                r = job.get();
+            } catch (ExecutionException e) {
+                pool.shutdownNow();
+                if (e.getCause() instanceof Error) throw (Error) e.getCause();
+                throw e;
+            }
+            if (r.error != null) {
+                failed++;
+                System.out.println("ERROR " + r.file + ": " + r.error);
+            } else {
+                points += r.points;
+                System.out.println("OK    " + r.out + " (" + r.points + " puntos, " + r.millis + " ms)");
+            }
+        }
+
+        long elapsed = (System.nanoTime() - t0) / 1_000_000;
+        System.out.println("Archivos: " + files.size()
+                + ", correctos: " + (files.size() - failed)
+                + ", con error: " + failed
+                + ", puntos: " + points
+                + ", tiempo: " + elapsed + " ms"
+                + ", hilos: " + threads);
+        return failed;
+    }
+
+    /**
+     * Escribe el reporte de --metrics en su archivo, o en stderr.
+     * No hace nada sin --metrics.
+     */
+    static void report(Options o, long wallNanos) throws IOException {
+        if (o.metrics == Metrics.NONE) return;
+        String json = o.metrics.json(wallNanos);
+        if (o.metricsFile == null) {
+            System.err.println(json);
+        } else {
+            Files.write(Paths.get(o.metricsFile), (json + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Imprime el uso y termina con código 1.
+     */
+    static void usage() {
+        System.err.println("Uso:");
+        System.err.println("java ar.fit.cli.SegmentFit archivo.fit --start=lat,lon --end=lat,lon [--stream]");
+        System.err.println("java ar.fit.cli.SegmentFit archivo.fit --start=lat,lon --loop [--radius=10] [--match=segment|vertex] [--simplify[=m]] [--stream]");
+        System.err.println("java ar.fit.cli.SegmentFit archivo.fit --start=lat,lon --laps[=split] [--radius=10]");
+        System.err.println("java ar.fit.cli.SegmentFit archivo.fit --catalog=segmentos.csv [--radius=10]");
+        System.err.println("java ar.fit.cli.SegmentFit archivo.fit --best=5km,20km,40km,20min");
+        System.err.println("java ar.fit.cli.SegmentFit --batch=<dir|glob> [--threads=N] <opciones de segmento>");
+        System.err.println("java ar.fit.cli.SegmentFit --serve[=8080] [--threads=N]");
+        System.err.println("Opciones: --distance=fast|exact --fast-decode --cache[=dir] --passthrough [--rebase-distance] --metrics[=archivo.json]");
+        System.exit(1);
+    }
+
+    public static void main(String[] args) throws Exception {
+
+        long t0 = System.nanoTime();
+        Options o;
+        try {
+            o = Options.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            usage();
+            return;
+        }
+        if (o.catalogFile != null) {
+            o.catalog = SegmentCatalog.load(Paths.get(o.catalogFile), o.radius, o.exactDistance);
+            if (o.catalog.size() == 0) {
+                System.err.println("Catálogo vacío: " + o.catalogFile);
+                System.exit(1);
+            }
+        }
+
+        if (o.serve > 0) {
+            SegmentServer.start(args, o);
+            System.out.println("Escuchando en http://127.0.0.1:" + o.serve
+                    + " (POST /segment, GET /health), hilos: " + o.threads);
+            return;
+        }
+
+        /**
+         * Validación básica de argumentos.
+         */
+        if (args.length < (o.catalog != null || o.best != null ? 2 : 3) && o.batch == null) {
+            usage();
+        }
+
+        if (o.batch != null) {
+            int failed = runBatch(o);
+            report(o, System.nanoTime() - t0);
+            if (failed < 0) System.exit(1);
+            if (failed > 0) System.exit(2);
+            return;
+        }
+
+        Result res = segment(args[0], o);
+        report(o, System.nanoTime() - t0);
+
+        if (o.catalog != null) {
+            System.out.println("Segmentos del catálogo: " + res.out);
+            return;
+        }
+        if (o.best != null) {
+            System.out.println("Mejores esfuerzos: " + res.out);
+            return;
+        }
+        if (o.laps) {
+            System.out.println("Vueltas: " + res.out);
+            return;
+        }
+
+        System.out.println("FIT generado: " + res.out);
+        System.out.println("Puntos: " + res.points);
+        System.out.println(String.format("Tiempo: %.2f s", res.seconds));
+    }
+}
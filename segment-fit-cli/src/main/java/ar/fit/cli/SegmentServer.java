@@ -0,0 +1,320 @@
+/*
+ * SegmentServer.java
+ *
+ * Modo servidor: API HTTP local para segmentar archivos subidos.
+ *
+ * Uso típico:
+ *   java ar.fit.cli.SegmentFit --serve=8080 [--threads=8] [--fast-decode]
+ *   curl --data-binary @actividad.fit -o segmento.fit \
+ *       "http://127.0.0.1:8080/segment?start=-34.60,-58.38&end=-34.61,-58.43"
+ *
+ * Copyright (c) 2026 Daniel Sappa
+ * Licenciado bajo la Licencia MIT.
+ */
+
+package ar.fit.cli;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+
+import com.garmin.fit.FitRuntimeException;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import ar.fit.SegmentDetector;
+import ar.fit.SegmentJobEvent;
+import ar.fit.SegmentWriter;
+import ar.fit.Track;
+import ar.fit.TrackReader;
+
+/**
+ * Servidor HTTP (com.sun.net.httpserver) que atiende solo en loopback.
+ * Una sola JVM atiende todas las subidas, con el JIT ya compilado, y
+ * los tracks decodificados se comparten entre pedidos: volver a subir
+ * el mismo archivo con otros parámetros no lo decodifica de nuevo.
+ *
+ * Endpoints:
+ *
+ *   POST /segment?start=lat,lon&end=lat,lon    cuerpo: el FIT original
+ *   POST /segment?start=lat,lon&loop[&radius=10][&match=vertex]
+ *        [&passthrough][&rebase-distance][&summary]
+ *        → el FIT del segmento, o con summary un JSON con el resumen
+ *   GET  /health → {"status":"ok","tracks":N}
+ *
+ * Los errores se responden como {"error":"..."}: 400 para parámetros
+ * inválidos o un archivo que no se puede decodificar, 413 si el archivo
+ * supera MAX_UPLOAD, 422 si no se encuentra el segmento y 500 ante
+ * cualquier otro error (el detalle queda solo en el log del servidor).
+ */
+final class SegmentServer {
+
+    /** Tamaño máximo de un FIT subido. */
+    static final int MAX_UPLOAD = 256 << 20;
+
+    /**
+     * Memoria total de los tracks decodificados que se mantienen entre
+     * pedidos (ver Track.bytes()); se descartan los menos usados.
+     */
+    static final long CACHED_BYTES = 512L << 20;
+
+    /** Parámetros que acepta /segment (el resto es del servidor). */
+    private static final List<String> REQUEST_PARAMS = Arrays.asList(
+            "start", "end", "loop", "radius", "match", "passthrough", "rebase-distance");
+
+    private final List<String> defaults = new ArrayList<>();
+    private final TrackReader reader;
+    private final Map<String, Track> tracks = new LinkedHashMap<>(16, 0.75f, true);
+    private long cachedBytes;   // suma de Track.bytes() de tracks (con su lock)
+
+    /**
+     * @param args argumentos de la línea de comandos; los parámetros de
+     *             segmento (--radius=, --match=, ...) quedan como valores
+     *             por defecto de cada pedido
+     * @param reader decodifica las subidas (--fast-decode se fija al
+     *               iniciar el servidor)
+     */
+    private SegmentServer(String[] args, TrackReader reader) {
+        this.reader = reader;
+        for (String a : args) {
+            if (isRequestParam(a)) defaults.add(a);
+        }
+    }
+
+    private static boolean isRequestParam(String arg) {
+        if (!arg.startsWith("--")) return false;
+        int eq = arg.indexOf('=');
+        return REQUEST_PARAMS.contains(eq < 0 ? arg.substring(2) : arg.substring(2, eq));
+    }
+
+    /**
+     * Inicia el servidor en 127.0.0.1:port. Los hilos del servidor
+     * mantienen viva la JVM.
+     */
+    static HttpServer start(String[] args, SegmentFit.Options o) throws IOException {
+        SegmentServer s = new SegmentServer(args, new TrackReader(o.fastDecode));
+        HttpServer http = HttpServer.create(
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), o.serve), 0);
+        http.createContext("/segment", s::segment);
+        http.createContext("/health", s::health);
+        http.setExecutor(Executors.newFixedThreadPool(o.threads));
+        http.start();
+        return http;
+    }
+
+    private void health(HttpExchange ex) throws IOException {
+        int n;
+        synchronized (tracks) {
+            n = tracks.size();
+        }
+        send(ex, 200, "application/json", ("{\"status\":\"ok\",\"tracks\":" + n + "}").getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void segment(HttpExchange ex) throws IOException {
+        try {
+            if (!ex.getRequestMethod().equals("POST")) {
+                error(ex, 405, "Se espera POST con el archivo FIT");
+                return;
+            }
+
+            List<String> args = new ArrayList<>(defaults);
+            boolean summary = false;
+            String query = ex.getRequestURI().getRawQuery();
+            for (String p : query == null ? new String[0] : query.split("&")) {
+                if (p.isEmpty()) continue;
+                String arg = "--" + URLDecoder.decode(p, "UTF-8");
+                if (arg.equals("--summary")) {
+                    summary = true;
+                } else if (isRequestParam(arg)) {
+                    args.add(arg);
+                } else {
+                    error(ex, 400, "Parámetro desconocido: " + p);
+                    return;
+                }
+            }
+            SegmentFit.Options o;
+            try {
+                o = SegmentFit.Options.parse(args.toArray(new String[0]));
+            } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+                error(ex, 400, "Parámetros inválidos: " + e.getMessage());
+                return;
+            }
+
+            byte[] body = readBody(ex);
+            if (body == null) {
+                error(ex, 413, "El archivo supera " + MAX_UPLOAD + " bytes");
+                return;
+            }
+
+            ByteBuffer raw = ByteBuffer.wrap(body);
+            String key = sha256(raw);
+            SegmentJobEvent job = SegmentJobEvent.start("upload " + key.substring(0, 12), o.mode(), o.radius);
+            try {
+                respond(ex, o, raw, key, summary, job);
+            } catch (RuntimeException e) {
+                job.error(e);
+                throw e;
+            } finally {
+                job.finish();
+            }
+
+        } catch (SegmentDetector.NotFoundException e) {
+            error(ex, 422, e.getMessage());
+        } catch (RuntimeException e) {
+            System.err.println("Error interno en " + ex.getRequestURI());
+            e.printStackTrace();
+            error(ex, 500, "Error interno");
+        } finally {
+            ex.close();
+        }
+    }
+
+    /**
+     * Segmenta el archivo subido y envía el FIT del tramo, o el resumen
+     * con summary. Cada fase queda medida en el evento del pedido.
+     */
+    private void respond(HttpExchange ex, SegmentFit.Options o, ByteBuffer raw, String key,
+            boolean summary, SegmentJobEvent job) throws IOException {
+        long t0 = System.nanoTime();
+        Track points;
+        try {
+            points = track(raw, key);
+        } catch (FitRuntimeException e) {
+            // El SDK no pudo decodificar la subida
+            job.error(e);
+            error(ex, 400, "Archivo FIT inválido: " + e.getMessage());
+            return;
+        }
+        SegmentDetector.Span span = o.detector().detect(points);
+        job.points(span.points());
+        long millis = (System.nanoTime() - t0) / 1_000_000;
+
+        if (summary) {
+            String json = String.format(Locale.ROOT,
+                    "{\"start\":%d,\"end\":%d,\"points\":%d,\"seconds\":%.3f,\"distance\":%.1f,\"millis\":%d}",
+                    span.i0, span.i1, span.points(), span.seconds,
+                    SegmentWriter.segmentDistance(points, span.i0, span.i1), millis);
+            send(ex, 200, "application/json", json.getBytes(StandardCharsets.UTF_8));
+            return;
+        }
+
+        byte[] fit = o.writer().encode(points, span, o.passthrough ? raw : null);
+        ex.getResponseHeaders().set("X-Segment-Points", String.valueOf(span.points()));
+        ex.getResponseHeaders().set("X-Segment-Seconds", String.format(Locale.ROOT, "%.3f", span.seconds));
+        send(ex, 200, "application/octet-stream", fit);
+    }
+
+    /**
+     * Track del archivo subido (key: su SHA-256), compartido entre
+     * pedidos por contenido. Dos subidas simultáneas del mismo archivo
+     * pueden decodificarlo dos veces; se queda el último. Un track que
+     * por sí solo supera CACHED_BYTES no se guarda. Solo la
+     * decodificación (sin el track en memoria) mide la fase DECODE.
+     */
+    private Track track(ByteBuffer raw, String key) {
+        synchronized (tracks) {
+            Track t = tracks.get(key);
+            if (t != null) return t;
+        }
+        Track t = reader.read(raw);
+        long bytes = t.bytes();
+        if (bytes > CACHED_BYTES) return t;
+        synchronized (tracks) {
+            Track old = tracks.put(key, t);
+            if (old != null) cachedBytes -= old.bytes();
+            cachedBytes += bytes;
+            Iterator<Track> lru = tracks.values().iterator();
+            while (cachedBytes > CACHED_BYTES) {
+                cachedBytes -= lru.next().bytes();
+                lru.remove();
+            }
+        }
+        return t;
+    }
+
+    /**
+     * SHA-256 del contenido del buffer (entre position y limit), en hex.
+     * Identifica una subida por su contenido.
+     */
+    private static String sha256(ByteBuffer buf) {
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);     // obligatorio en toda JVM
+        }
+        md.update(buf.duplicate());
+        StringBuilder hex = new StringBuilder(64);
+        for (byte b : md.digest()) hex.append(String.format("%02x", b));
+        return hex.toString();
+    }
+
+    /** Cuerpo completo del pedido, o null si supera MAX_UPLOAD. */
+    private static byte[] readBody(HttpExchange ex) throws IOException {
+        String length = ex.getRequestHeaders().getFirst("Content-Length");
+        if (length != null && Long.parseLong(length) > MAX_UPLOAD) return null;
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(
+                length != null ? Integer.parseInt(length) : 1 << 16);
+        byte[] buf = new byte[1 << 16];
+        try (InputStream in = ex.getRequestBody()) {
+            int n;
+            while ((n = in.read(buf)) > 0) {
+                if (out.size() + n > MAX_UPLOAD) return null;
+                out.write(buf, 0, n);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static void error(HttpExchange ex, int status, String msg) throws IOException {
+        String json = "{\"error\":" + jsonString(msg) + "}";
+        send(ex, status, "application/json", json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Cadena JSON entre comillas: escapa comillas, barras y todos los
+     * caracteres de control (por ejemplo saltos de línea de una excepción).
+     */
+    static String jsonString(String s) {
+        StringBuilder b = new StringBuilder(s.length() + 2).append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"': b.append("\\\""); break;
+                case '\\': b.append("\\\\"); break;
+                case '\n': b.append("\\n"); break;
+                case '\r': b.append("\\r"); break;
+                case '\t': b.append("\\t"); break;
+                default:
+                    if (c < 0x20) b.append(String.format("\\u%04x", (int) c));
+                    else b.append(c);
+            }
+        }
+        return b.append('"').toString();
+    }
+
+    private static void send(HttpExchange ex, int status, String type, byte[] body) throws IOException {
+        ex.getResponseHeaders().set("Content-Type", type);
+        ex.sendResponseHeaders(status, body.length);
+        try (OutputStream out = ex.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * BestEfforts.java
+ *
+ * Mejores esfuerzos de una actividad: ventanas de distancia y de tiempo.
+ *
+ * Copyright (c) 2026 Daniel Sappa
+ * Licenciado bajo la Licencia MIT.
+ */
+
+package ar.fit;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Busca, para varias ventanas a la vez, el mejor tramo de la actividad:
+ *
+ *  - ventanas de distancia (5km, 400m): el tramo más rápido que cubre
+ *    al menos esa distancia
+ *  - ventanas de tiempo (20min, 30s): la mayor FC media en un tramo de
+ *    al menos esa duración, ponderada por tiempo (cada valor vale
+ *    hasta el punto siguiente: un corte de registro no la sesga)
+ *
+ * Sobre las sumas acumuladas de distancia y FC (TrackStats), cada
+ * ventana mantiene un puntero al inicio más tardío que todavía cumple
+ * el largo pedido (dos punteros), por lo que todas las ventanas se
+ * resuelven en una sola pasada lineal sobre el track. Ante empates se
+ * conserva el primer tramo.
+ *
+ * Uso típico:
+ *   List<BestEfforts.Effort> efforts = BestEfforts.search(track, BestEfforts.parse("5km,20min"));
+ */
+public final class BestEfforts {
+
+    /** Largo de ventana pedido (por distancia o por tiempo). */
+    public static final class Window {
+        public final String label;
+        public final boolean time;         // true: segundos; false: metros
+        public final double length;
+
+        Window(String label, boolean time, double length) {
+            this.label = label;
+            this.time = time;
+            this.length = length;
+        }
+    }
+
+    /** Mejor tramo encontrado para una ventana. */
+    public static final class Effort {
+        public final Window window;
+        public final int i0, i1;
+        public final long seconds;
+        public final double distance;
+        public final double avgHr;         // ponderada por tiempo; NaN sin FC
+
+        Effort(Window window, int i0, int i1, long seconds, double distance, double avgHr) {
+            this.window = window;
+            this.i0 = i0;
+            this.i1 = i1;
+            this.seconds = seconds;
+            this.distance = distance;
+            this.avgHr = avgHr;
+        }
+    }
+
+    private BestEfforts() {
+    }
+
+    /**
+     * Ventanas separadas por coma, con unidad: km, m, h, min o s.
+     * Ejemplo: "5km,20km,40km,20min".
+     *
+     * @throws IllegalArgumentException si alguna ventana no tiene número
+     *         o unidad válidos
+     */
+    public static List<Window> parse(String spec) {
+        List<Window> windows = new ArrayList<>();
+        for (String w : spec.split(",")) {
+            String s = w.trim();
+            if (s.isEmpty()) continue;
+            int u = 0;
+            while (u < s.length() && (Character.isDigit(s.charAt(u)) || s.charAt(u) == '.')) u++;
+            if (u == 0)
+                throw new IllegalArgumentException("Ventana inválida: " + s);
+            double v = Double.parseDouble(s.substring(0, u));
+            switch (s.substring(u)) {
+                case "km": windows.add(new Window(s, false, v * 1000)); break;
+                case "m": windows.add(new Window(s, false, v)); break;
+                case "h": windows.add(new Window(s, true, v * 3600)); break;
+                case "min": windows.add(new Window(s, true, v * 60)); break;
+                case "s": windows.add(new Window(s, true, v)); break;
+                default: throw new IllegalArgumentException("Unidad desconocida en la ventana: " + s);
+            }
+        }
+        if (windows.isEmpty())
+            throw new IllegalArgumentException("No se indicaron ventanas: " + spec);
+        return windows;
+    }
+
+    /**
+     * Mejor tramo de cada ventana. Las ventanas que la actividad no
+     * alcanza a cubrir (o de tiempo sin FC) quedan fuera del resultado.
+     */
+    public static List<Effort> search(Track points, List<Window> windows) {
+        int n = points.size();
+        TrackStats stats = points.stats();
+        double[] dist = stats.dist;
+
+        int w = windows.size();
+        int[] lo = new int[w];          // inicio candidato de cada ventana
+        int[] best0 = new int[w];
+        int[] best1 = new int[w];
+        double[] score = new double[w]; // menor tiempo o mayor FC media
+        for (int k = 0; k < w; k++) {
+            best0[k] = -1;
+            score[k] = windows.get(k).time ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+        }
+
+        for (int j = 0; j < n; j++) {
+            for (int k = 0; k < w; k++) {
+                Window win = windows.get(k);
+                int i = lo[k];
+                if (win.time) {
+                    while (i < j && points.ts[j] - points.ts[i + 1] >= win.length) i++;
+                    lo[k] = i;
+                    if (points.ts[j] - points.ts[i] < win.length) continue;
+                    double avg = stats.avgHrTimed(i, j);
+                    if (Double.isNaN(avg)) continue;
+                    if (avg > score[k]) {
+                        score[k] = avg;
+                        best0[k] = i;
+                        best1[k] = j;
+                    }
+                } else {
+                    while (i < j && dist[j] - dist[i + 1] >= win.length) i++;
+                    lo[k] = i;
+                    if (dist[j] - dist[i] < win.length) continue;
+                    double t = points.ts[j] - points.ts[i];
+                    if (t < score[k]) {
+                        score[k] = t;
+                        best0[k] = i;
+                        best1[k] = j;
+                    }
+                }
+            }
+        }
+
+        List<Effort> efforts = new ArrayList<>();
+        for (int k = 0; k < w; k++) {
+            int i0 = best0[k];
+            int i1 = best1[k];
+            if (i0 < 0) continue;
+            efforts.add(new Effort(windows.get(k), i0, i1,
+                    stats.seconds(i0, i1), stats.distance(i0, i1), stats.avgHrTimed(i0, i1)));
+        }
+        return efforts;
+    }
+}
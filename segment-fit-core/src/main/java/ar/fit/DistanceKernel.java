@@ -0,0 +1,160 @@
+/*
+ * DistanceKernel.java
+ *
+ * Kernels de distancia respecto de un punto de referencia fijo.
+ *
+ * Copyright (c) 2026 Daniel Sappa
+ * Licenciado bajo la Licencia MIT.
+ */
+
+package ar.fit;
+
+/**
+ * Distancia desde un punto de referencia (start, end, vértice consultado).
+ *
+ * Los llamadores casi nunca necesitan la distancia exacta: comparan
+ * contra un radio de decenas de metros o buscan un mínimo. Por eso
+ * el kernel ofrece una cota inferior barata y una decisión within()
+ * que solo recurre a Haversine cuando la estimación cae cerca del umbral.
+ */
+interface DistanceKernel {
+
+    /** Distancia Haversine exacta (m) a la referencia. */
+    double distance(double lat, double lon);
+
+    /** Cota inferior barata de distance(). */
+    double lowerBound(double lat, double lon);
+
+    /** Equivale a distance(lat, lon) <= radius. */
+    boolean within(double lat, double lon, double radius);
+
+    /**
+     * Kernel rápido (equirectangular) centrado en la coordenada dada.
+     * Cerca de los polos, donde la proyección se degrada, usa el exacto.
+     */
+    static DistanceKernel at(double lat, double lon) {
+        return at(lat, lon, false);
+    }
+
+    /**
+     * @param exact Haversine en todas las comparaciones (--distance=exact)
+     */
+    static DistanceKernel at(double lat, double lon, boolean exact) {
+        if (exact || Math.abs(lat) > 85.0)
+            return exact(lat, lon);
+        return new Equirectangular(lat, lon);
+    }
+
+    /** Kernel que siempre calcula Haversine. */
+    static DistanceKernel exact(double lat, double lon) {
+        return new Haversine(lat, lon);
+    }
+
+    /**
+     * Distancia Haversine entre dos coordenadas GPS.
+     *
+     * Devuelve distancia en metros.
+     * Es la medida de referencia: los kernels recurren a ella cerca de
+     * los umbrales y para reportar distancias.
+     */
+    static double haversine(double lat1, double lon1, double lat2, double lon2) {
+        Metrics.current().increment(Metrics.Counter.HAVERSINE);
+        double R = 6371000.0; // Radio medio de la Tierra (m)
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1))
+                * Math.cos(Math.toRadians(lat2))
+                * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return R * 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+    }
+
+    final class Haversine implements DistanceKernel {
+        private final double refLat, refLon;
+
+        Haversine(double lat, double lon) {
+            this.refLat = lat;
+            this.refLon = lon;
+        }
+
+        @Override
+        public double distance(double lat, double lon) {
+            return haversine(refLat, refLon, lat, lon);
+        }
+
+        @Override
+        public double lowerBound(double lat, double lon) {
+            return distance(lat, lon);
+        }
+
+        @Override
+        public boolean within(double lat, double lon, double radius) {
+            return distance(lat, lon) <= radius;
+        }
+    }
+
+    /**
+     * Aproximación plana con cos(lat) precalculado para la referencia:
+     *
+     *   d ≈ R * sqrt(dLat² + (cos(lat0) * dLon)²)
+     *
+     * El error relativo frente a Haversine crece con la distancia
+     * (la latitud del punto se aleja de lat0) y con tan(lat0);
+     * slack() es una cota conservadora de ese error, así las decisiones
+     * tomadas sin Haversine coinciden siempre con las exactas.
+     */
+    final class Equirectangular implements DistanceKernel {
+        private static final double R = 6371000.0;
+        private static final double RAD = Math.PI / 180.0;
+
+        // Visibles para VectorTrackScan, que replica flat() y slack()
+        final double refLat, refLon;
+        final double kx;                    // m por grado de longitud
+        final double ky;                    // m por grado de latitud
+        final double errPerMeter;           // error relativo por metro
+
+        Equirectangular(double lat, double lon) {
+            this.refLat = lat;
+            this.refLon = lon;
+            double cos = Math.cos(lat * RAD);
+            this.ky = R * RAD;
+            this.kx = ky * cos;
+            this.errPerMeter = (1.0 + Math.sqrt(1.0 - cos * cos) / cos) / R;
+        }
+
+        /** Distancia plana (m). */
+        double flat(double lat, double lon) {
+            double dLon = lon - refLon;
+            if (dLon > 180.0) dLon -= 360.0;
+            else if (dLon < -180.0) dLon += 360.0;
+            double dx = dLon * kx;
+            double dy = (lat - refLat) * ky;
+            return Math.sqrt(dx * dx + dy * dy);
+        }
+
+        /** Cota del error relativo para una distancia plana f. */
+        private double slack(double f) {
+            return 1e-6 + f * errPerMeter;
+        }
+
+        @Override
+        public double distance(double lat, double lon) {
+            return haversine(refLat, refLon, lat, lon);
+        }
+
+        @Override
+        public double lowerBound(double lat, double lon) {
+            double f = flat(lat, lon);
+            return f * (1.0 - slack(f));
+        }
+
+        @Override
+        public boolean within(double lat, double lon, double radius) {
+            double f = flat(lat, lon);
+            double e = slack(f);
+            if (f * (1.0 + e) <= radius) return true;
+            if (f * (1.0 - e) > radius) return false;
+            return distance(lat, lon) <= radius;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * FitInput.java
+ *
+ * Capa de entrada: acceso a archivos FIT mapeados en memoria.
+ *
+ * Copyright (c) 2026 Daniel Sappa
+ * Licenciado bajo la Licencia MIT.
+ */
+
+package ar.fit;
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Abre archivos FIT para los decoders.
+ *
+ * Los archivos se mapean con MappedByteBuffer: los decoders propios
+ * (FitScanner, FitRecordDecoder, FitPassthrough) trabajan directamente
+ * sobre la región mapeada, y el SDK lee a través de un InputStream sobre
+ * el mismo buffer, sin syscalls por cada lectura ni copias intermedias.
+ *
+ * Un MappedByteBuffer está limitado a 2 GB; los archivos más grandes
+ * se leen con un stream con buffer grande (solo por el SDK).
+ */
+final class FitInput {
+
+    /** Tamaño máximo mapeable en un solo buffer. */
+    static final long MAX_MAPPED = Integer.MAX_VALUE;
+
+    /** Buffer de lectura para archivos que no se pueden mapear. */
+    static final int STREAM_BUFFER = 1 << 20;
+
+    private FitInput() {
+    }
+
+    /**
+     * Mapea el archivo completo en modo solo lectura.
+     *
+     * @throws TooLargeException si supera MAX_MAPPED
+     */
+    static ByteBuffer map(String fitFile) throws IOException {
+        try (FileChannel ch = FileChannel.open(Paths.get(fitFile), StandardOpenOption.READ)) {
+            long size = ch.size();
+            if (size > MAX_MAPPED)
+                throw new TooLargeException(size);
+            // El mapeo sigue siendo válido después de cerrar el canal
+            return ch.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+    }
+
+    /**
+     * El archivo supera MAX_MAPPED: se debe leer como stream.
+     */
+    static final class TooLargeException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        TooLargeException(long size) {
+            super("Archivo de " + size + " bytes, demasiado grande para mapear");
+        }
+    }
+
+    /**
+     * Stream para el decoder del SDK: sobre el archivo mapeado si es
+     * posible, o con buffer grande si no.
+     */
+    static InputStream open(String fitFile) throws IOException {
+        try {
+            return new ByteBufferInputStream(map(fitFile));
+        } catch (TooLargeException e) {
+            return new BufferedInputStream(new FileInputStream(fitFile), STREAM_BUFFER);
+        }
+    }
+
+    /**
+     * SHA-256 del contenido del buffer (entre position y limit), en hex.
+     * Identifica un archivo por su contenido y no por su nombre.
+     */
+    static String sha256(ByteBuffer buf) {
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);     // obligatorio en toda JVM
+        }
+        md.update(buf.duplicate());
+        StringBuilder hex = new StringBuilder(64);
+        for (byte b : md.digest()) hex.append(String.format("%02x", b));
+        return hex.toString();
+    }
+
+    /**
+     * InputStream de solo lectura sobre un ByteBuffer.
+     */
+    static final class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buf;
+
+        ByteBufferInputStream(ByteBuffer buf) {
+            this.buf = buf.duplicate();
+        }
+
+        @Override
+        public int read() {
+            return buf.hasRemaining() ? buf.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) return 0;
+            if (!buf.hasRemaining()) return -1;
+            int n = Math.min(len, buf.remaining());
+            buf.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public long skip(long n) {
+            int k = (int) Math.max(0, Math.min(n, buf.remaining()));
+            buf.position(buf.position() + k);
+            return k;
+        }
+
+        @Override
+        public int available() {
+            return buf.remaining();
+        }
+    }
+}
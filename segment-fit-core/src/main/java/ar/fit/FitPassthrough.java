@@ -0,0 +1,261 @@
+/*
+ * FitPassthrough.java
+ *
+ * Copia sin pérdida de los records originales de un tramo.
+ *
+ * Copyright (c) 2026 Daniel Sappa
+ * Licenciado bajo la Licencia MIT.
+ */
+
+package ar.fit;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Genera el FIT del segmento copiando los bytes originales de los
+ * mensajes de definición y de datos en lugar de reconstruir cada
+ * RecordMesg. Se conservan todos los campos (potencia, temperatura,
+ * campos de developer, etc.) y las posiciones exactas.
+ *
+ * Contenido del archivo generado:
+ *  - el primer file_id del original
+ *  - developer_data_id / field_description previos al final del tramo
+ *    (necesarios para interpretar los campos de developer)
+ *  - exactamente los records de los trackpoints i0..i1 (según la
+ *    posición de cada record guardada al decodificar, ver Track.record):
+ *    no se copian los records sin GPS ni los de otros trackpoints con
+ *    el mismo timestamp que un extremo
+ *  - un mensaje session nuevo con los totales y el resumen del segmento
+ *
+ * Solo se modifican el header, el CRC y, si se pide, el campo distance
+ * de los records (para que el segmento empiece en 0 m).
+ */
+final class FitPassthrough {
+
+    /** Campo distance del record: uint32, escala 100 (m). */
+    static final int FIELD_DISTANCE = 5;
+
+    private FitPassthrough() {
+    }
+
+    /**
+     * Copia los records de los trackpoints i0..i1 del FIT de entrada,
+     * del que se decodificó el track.
+     *
+     * @param seconds duración del segmento (s) para la session
+     * @param stats   estadísticas de un tramo que contiene i0..i1, para
+     *                la distancia y el resumen de la session
+     * @return bytes escritos
+     * @throws FitScanner.FormatException si el archivo usa una estructura
+     *         que no se puede copiar tal cual, o sus records no coinciden
+     *         con los del track (el llamador debe usar el encoder del SDK)
+     */
+    static long write(
+            ByteBuffer in,
+            Track points,
+            int i0,
+            int i1,
+            double seconds,
+            TrackStats stats,
+            boolean rebaseDistance,
+            OutputStream out) throws IOException {
+
+        long tsFrom = points.ts[i0];
+        long tsTo = points.ts[i1];
+        int[] next = { i0 };                // próximo trackpoint a copiar
+        ByteArrayOutputStream body = new ByteArrayOutputStream(1 << 16);
+        int[] protocol = { 0x20, 0 };       // versión de protocolo y de perfil
+
+        FitScanner.scan(in.duplicate(), new FitScanner.Visitor() {
+            /** Definición vigente en la salida para cada tipo local. */
+            final FitScanner.Definition[] emitted = new FitScanner.Definition[16];
+            boolean fileIdDone;
+            long outLastTs = -1;            // último timestamp escrito en la salida
+            long prevTs = -1;               // timestamp vigente antes del mensaje actual
+            long distanceBase = -1;
+            int records;                    // records vistos en la entrada
+            byte[] scratch = new byte[256];
+
+            @Override
+            public void fileStart(ByteBuffer buf, int offset, int headerSize) {
+                if (protocol[1] == 0) {
+                    protocol[0] = buf.get(offset + 1) & 0xFF;
+                    protocol[1] = (int) FitScanner.readUInt(buf, offset + 2, 2, false);
+                }
+                prevTs = -1;
+            }
+
+            @Override
+            public void data(ByteBuffer buf, FitScanner.Definition d, int offset, int length,
+                             long timestamp, boolean compressed) {
+                long before = prevTs;
+                prevTs = timestamp;
+
+                boolean copy;
+                switch (d.globalNum) {
+                    case FitScanner.MESG_FILE_ID:
+                        copy = !fileIdDone;
+                        fileIdDone = true;
+                        break;
+                    case FitScanner.MESG_DEVELOPER_DATA_ID:
+                    case FitScanner.MESG_FIELD_DESCRIPTION:
+                        copy = timestamp < 0 || timestamp <= tsTo;
+                        break;
+                    case FitScanner.MESG_RECORD:
+                        int record = records++;
+                        copy = next[0] <= i1 && points.record[next[0]] == record;
+                        if (copy) {
+                            if (timestamp != points.ts[next[0]])
+                                throw new FitScanner.FormatException(
+                                        "Record " + record + " distinto del trackpoint " + next[0]);
+                            next[0]++;
+                        }
+                        break;
+                    default:
+                        copy = false;
+                }
+                if (!copy) return;
+
+                // Un header comprimido depende del timestamp anterior:
+                // solo es válido si la salida tiene el mismo encadenamiento
+                if (compressed && outLastTs != before)
+                    throw new FitScanner.FormatException(
+                            "Header de timestamp comprimido sin su timestamp de referencia");
+
+                if (emitted[d.localType] != d) {
+                    copyBytes(buf, d.offset, d.length, body);
+                    emitted[d.localType] = d;
+                }
+
+                if (length > scratch.length) scratch = new byte[length];
+                ByteBuffer src = buf.duplicate();
+                src.position(offset);
+                src.get(scratch, 0, length);
+
+                if (rebaseDistance && d.globalNum == FitScanner.MESG_RECORD) {
+                    int off = d.fieldOffset(FIELD_DISTANCE);
+                    if (off > 0 && d.fieldSize(FIELD_DISTANCE) == 4) {
+                        long dist = FitScanner.readUInt(buf, offset + off, 4, d.bigEndian);
+                        if (dist != FitScanner.UINT32_INVALID) {
+                            if (distanceBase < 0) distanceBase = dist;
+                            FitScanner.writeUInt(scratch, off, 4, d.bigEndian,
+                                    Math.max(0, dist - distanceBase));
+                        }
+                    }
+                }
+
+                body.write(scratch, 0, length);
+                if (compressed || d.fieldOffset(FitScanner.FIELD_TIMESTAMP) > 0) {
+                    outLastTs = timestamp;
+                }
+            }
+        });
+
+        if (next[0] <= i1)
+            throw new FitScanner.FormatException("Faltan records del tramo en el archivo");
+
+        writeSession(body, tsFrom, tsTo, seconds, stats, i0, i1);
+
+        /**
+         * Header de 14 bytes con CRC propio, datos y CRC del archivo.
+         */
+        byte[] data = body.toByteArray();
+        byte[] header = new byte[14];
+        header[0] = 14;
+        header[1] = (byte) protocol[0];
+        FitScanner.writeUInt(header, 2, 2, false, protocol[1]);
+        FitScanner.writeUInt(header, 4, 4, false, data.length);
+        header[8] = '.';
+        header[9] = 'F';
+        header[10] = 'I';
+        header[11] = 'T';
+        int crc = 0;
+        for (int i = 0; i < 12; i++) crc = FitScanner.crc16(crc, header[i]);
+        FitScanner.writeUInt(header, 12, 2, false, crc);
+
+        crc = 0;
+        for (byte x : header) crc = FitScanner.crc16(crc, x);
+        for (byte x : data) crc = FitScanner.crc16(crc, x);
+
+        out.write(header);
+        out.write(data);
+        out.write(crc & 0xFF);
+        out.write((crc >> 8) & 0xFF);
+        return header.length + data.length + 2L;
+    }
+
+    private static void copyBytes(ByteBuffer buf, int offset, int length, ByteArrayOutputStream out) {
+        byte[] tmp = new byte[length];
+        ByteBuffer src = buf.duplicate();
+        src.position(offset);
+        src.get(tmp);
+        out.write(tmp, 0, length);
+    }
+
+    /**
+     * Mensaje session del segmento (definición propia, little endian),
+     * con los mismos campos que escribe SegmentWriter.writeSegment: los
+     * canales sin datos en el tramo quedan con el valor inválido de FIT.
+     */
+    private static void writeSession(
+            ByteArrayOutputStream out, long tsFrom, long tsTo, double seconds,
+            TrackStats stats, int i0, int i1) {
+        int[][] fields = {
+                // número, tamaño, tipo base
+                { FitScanner.FIELD_TIMESTAMP, 4, 0x86 },
+                { 2, 4, 0x86 },     // start_time
+                { 7, 4, 0x86 },     // total_elapsed_time (s * 1000)
+                { 8, 4, 0x86 },     // total_timer_time (s * 1000)
+                { 9, 4, 0x86 },     // total_distance (m * 100)
+                { 14, 2, 0x84 },    // avg_speed (m/s * 1000)
+                { 15, 2, 0x84 },    // max_speed (m/s * 1000)
+                { 22, 2, 0x84 },    // total_ascent (m)
+                { 23, 2, 0x84 },    // total_descent (m)
+                { 5, 1, 0x00 },     // sport
+                { 16, 1, 0x02 },    // avg_heart_rate (bpm)
+                { 17, 1, 0x02 },    // max_heart_rate (bpm)
+        };
+
+        out.write(0x40);            // definición, tipo local 0
+        out.write(0);               // reservado
+        out.write(0);               // little endian
+        out.write(FitScanner.MESG_SESSION);
+        out.write(0);
+        out.write(fields.length);
+        for (int[] f : fields) {
+            out.write(f[0]);
+            out.write(f[1]);
+            out.write(f[2]);
+        }
+
+        long elapsed = Math.round(seconds * 1000);
+        boolean altitude = stats.hasAltitude(i0, i1);
+        byte[] data = new byte[1 + 4 * 5 + 2 * 4 + 3];
+        data[0] = 0x00;             // datos, tipo local 0
+        FitScanner.writeUInt(data, 1, 4, false, tsTo);
+        FitScanner.writeUInt(data, 5, 4, false, tsFrom);
+        FitScanner.writeUInt(data, 9, 4, false, elapsed);
+        FitScanner.writeUInt(data, 13, 4, false, elapsed);
+        FitScanner.writeUInt(data, 17, 4, false, Math.round(stats.distance(i0, i1) * 100));
+        FitScanner.writeUInt(data, 21, 2, false, uint(stats.avgSpeed(i0, i1) * 1000, 0xFFFF));
+        FitScanner.writeUInt(data, 23, 2, false, uint(stats.maxSpeed(i0, i1) * 1000, 0xFFFF));
+        FitScanner.writeUInt(data, 25, 2, false, uint(altitude ? stats.ascent(i0, i1) : Double.NaN, 0xFFFF));
+        FitScanner.writeUInt(data, 27, 2, false, uint(altitude ? stats.descent(i0, i1) : Double.NaN, 0xFFFF));
+        data[29] = 2;               // Sport.CYCLING
+        data[30] = (byte) uint(stats.avgHr(i0, i1), 0xFF);
+        data[31] = (byte) uint(stats.maxHr(i0, i1), 0xFF);
+        out.write(data, 0, data.length);
+    }
+
+    /**
+     * Valor redondeado de un campo entero sin signo; NaN (canal sin
+     * datos) da el valor inválido, y el resto se limita por debajo de él.
+     */
+    private static long uint(double v, long invalid) {
+        if (Double.isNaN(v)) return invalid;
+        return Math.max(0, Math.min(invalid - 1, Math.round(v)));
+    }
+}
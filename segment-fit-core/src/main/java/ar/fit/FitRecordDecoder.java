@@ -0,0 +1,157 @@
+/*
+ * FitRecordDecoder.java
+ *
+ * Decodificador rápido de records FIT directamente a un Track.
+ *
+ * Copyright (c) 2026 Daniel Sappa
+ * Licenciado bajo la Licencia MIT.
+ */
+
+package ar.fit;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Lee los mensajes record (global 20) directamente de los bytes del
+ * archivo y carga en el Track solo los campos que usa SegmentFit,
+ * sin crear un RecordMesg por record ni pasar por MesgBroadcaster.
+ *
+ * Campos (FIT Profile, mensaje record):
+ *
+ *   253 timestamp   uint32
+ *     0 position_lat sint32 (semicircles)
+ *     1 position_long sint32 (semicircles)
+ *     2 altitude    uint16, escala 5, offset 500 (m)
+ *     3 heart_rate  uint8 (bpm)
+ *     4 cadence     uint8 (rpm)
+ *     6 speed       uint16, escala 1000 (m/s)
+ *
+ * Replica lo que devuelve el SDK: los valores inválidos cuentan como
+ * ausentes y los records sin posición o sin timestamp se descartan.
+ * Ante cualquier estructura inesperada (CRC incorrecto, un campo con
+ * tamaño distinto al del perfil, o el campo 8 compressed_speed_distance,
+ * que el SDK expande en speed) lanza FitScanner.FormatException para
+ * que el llamador use el decoder del SDK.
+ */
+final class FitRecordDecoder {
+
+    private static final int F_TIMESTAMP = 0;
+    private static final int F_LAT = 1;
+    private static final int F_LON = 2;
+    private static final int F_ALTITUDE = 3;
+    private static final int F_HR = 4;
+    private static final int F_CADENCE = 5;
+    private static final int F_SPEED = 6;
+
+    /** Número de campo y tamaño esperado de cada columna. */
+    private static final int[] FIELD_NUM = { 253, 0, 1, 2, 3, 4, 6 };
+    private static final int[] FIELD_SIZE = { 4, 4, 4, 2, 1, 1, 2 };
+
+    /** compressed_speed_distance: el SDK lo expande en speed y distance. */
+    private static final int FIELD_COMPRESSED_SPEED_DISTANCE = 8;
+
+    private FitRecordDecoder() {
+    }
+
+    /**
+     * Decodifica todos los trackpoints del buffer (entre position y limit).
+     */
+    static Track decode(ByteBuffer buf) {
+        checkCrc(buf);
+
+        Track t = new Track();
+        FitScanner.scan(buf.duplicate(), new FitScanner.Visitor() {
+            /** Offsets de cada columna por tipo local (-1: ausente). */
+            final int[][] layouts = new int[16][];
+            int records;    // records vistos, con o sin posición
+
+            @Override
+            public void definition(ByteBuffer b, FitScanner.Definition d) {
+                if (d.globalNum != FitScanner.MESG_RECORD) {
+                    layouts[d.localType] = null;
+                    return;
+                }
+                if (d.fieldOffset(FIELD_COMPRESSED_SPEED_DISTANCE) > 0)
+                    throw new FitScanner.FormatException("Record con compressed_speed_distance");
+                int[] layout = new int[FIELD_NUM.length];
+                for (int f = 0; f < FIELD_NUM.length; f++) {
+                    layout[f] = d.fieldOffset(FIELD_NUM[f]);
+                    if (layout[f] > 0 && d.fieldSize(FIELD_NUM[f]) != FIELD_SIZE[f])
+                        throw new FitScanner.FormatException(
+                                "Campo " + FIELD_NUM[f] + " del record con tamaño inesperado");
+                }
+                layouts[d.localType] = layout;
+            }
+
+            @Override
+            public void data(ByteBuffer b, FitScanner.Definition d, int offset, int length,
+                             long timestamp, boolean compressed) {
+                if (d.globalNum != FitScanner.MESG_RECORD) return;
+                int record = records++;
+                int[] l = layouts[d.localType];
+                boolean be = d.bigEndian;
+
+                // Timestamp propio o del header comprimido
+                long ts;
+                if (compressed) {
+                    ts = timestamp;
+                } else if (l[F_TIMESTAMP] > 0) {
+                    ts = FitScanner.readUInt(b, offset + l[F_TIMESTAMP], 4, be);
+                    if (ts == FitScanner.UINT32_INVALID) return;
+                } else {
+                    return;
+                }
+                if (ts < 0 || l[F_LAT] < 0 || l[F_LON] < 0) return;
+
+                int lat = (int) FitScanner.readUInt(b, offset + l[F_LAT], 4, be);
+                int lon = (int) FitScanner.readUInt(b, offset + l[F_LON], 4, be);
+                if (lat == Integer.MAX_VALUE || lon == Integer.MAX_VALUE) return;
+
+                int i = t.add(ts, lat, lon);
+                t.setRecord(i, record);
+
+                if (l[F_HR] > 0) {
+                    int v = b.get(offset + l[F_HR]) & 0xFF;
+                    if (v != 0xFF) t.setHr(i, (short) v);
+                }
+                if (l[F_CADENCE] > 0) {
+                    int v = b.get(offset + l[F_CADENCE]) & 0xFF;
+                    if (v != 0xFF) t.setCadence(i, (short) v);
+                }
+                if (l[F_SPEED] > 0) {
+                    int v = (int) FitScanner.readUInt(b, offset + l[F_SPEED], 2, be);
+                    if (v != 0xFFFF) t.setSpeed(i, v / 1000f);
+                }
+                if (l[F_ALTITUDE] > 0) {
+                    int v = (int) FitScanner.readUInt(b, offset + l[F_ALTITUDE], 2, be);
+                    if (v != 0xFFFF) t.setAltitude(i, v / 5f - 500f);
+                }
+            }
+        });
+        return t;
+    }
+
+    /**
+     * Verifica el CRC de cada archivo del buffer, como hace el SDK.
+     * Un CRC almacenado en 0 indica que el archivo no lo calculó.
+     */
+    static void checkCrc(ByteBuffer buf) {
+        int pos = buf.position();
+        int limit = buf.limit();
+        while (pos + 12 <= limit) {
+            int headerSize = buf.get(pos) & 0xFF;
+            long end = pos + headerSize + FitScanner.readUInt(buf, pos + 4, 4, false);
+            if (headerSize < 12 || end + 2 > limit)
+                throw new FitScanner.FormatException("Archivo FIT truncado");
+
+            int stored = (int) FitScanner.readUInt(buf, (int) end, 2, false);
+            if (stored != 0) {
+                int crc = 0;
+                for (int i = pos; i < end; i++) crc = FitScanner.crc16(crc, buf.get(i));
+                if (crc != stored)
+                    throw new FitScanner.FormatException("CRC del archivo FIT incorrecto");
+            }
+            pos = (int) end + 2;
+        }
+    }
+}
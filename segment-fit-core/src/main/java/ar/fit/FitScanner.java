@@ -0,0 +1,253 @@
+/*
+ * FitScanner.java
+ *
+ * Recorrido de bajo nivel de la estructura de mensajes de un archivo FIT.
+ *
+ * Copyright (c) 2026 Daniel Sappa
+ * Licenciado bajo la Licencia MIT.
+ */
+
+package ar.fit;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Recorre los mensajes de definición y de datos de un FIT sin
+ * decodificarlos, informando la posición en bytes de cada uno.
+ *
+ * Formato (FIT Protocol, sección "File Structure"):
+ *
+ *   header (12 o 14 bytes) | mensajes (dataSize bytes) | CRC (2 bytes)
+ *
+ * Cada mensaje empieza con un byte de header:
+ *  - bit 7 = 1: header comprimido con offset de timestamp (bits 0-4)
+ *               y tipo local en bits 5-6
+ *  - bit 6 = 1: mensaje de definición (bit 5: incluye campos de developer)
+ *  - bit 6 = 0: mensaje de datos del tipo local en bits 0-3
+ *
+ * Soporta archivos encadenados (varios FIT concatenados).
+ */
+final class FitScanner {
+
+    static final int MESG_FILE_ID = 0;
+    static final int MESG_SESSION = 18;
+    static final int MESG_RECORD = 20;
+    static final int MESG_FIELD_DESCRIPTION = 206;
+    static final int MESG_DEVELOPER_DATA_ID = 207;
+
+    static final int FIELD_TIMESTAMP = 253;
+
+    /** Valor inválido de un uint32 FIT. */
+    static final long UINT32_INVALID = 0xFFFFFFFFL;
+
+    /** Archivo FIT mal formado o con una estructura no soportada. */
+    static final class FormatException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        FormatException(String msg) {
+            super(msg);
+        }
+    }
+
+    /**
+     * Mensaje de definición: describe el layout de los mensajes de datos
+     * de un tipo local hasta que se redefina.
+     */
+    static final class Definition {
+        int localType;
+        int globalNum;
+        boolean bigEndian;
+        int[] fieldNum;
+        int[] fieldSize;
+        int[] fieldType;
+        int devDataSize;    // bytes de campos de developer
+        int dataSize;       // bytes de datos, sin el byte de header
+
+        int offset;         // posición del mensaje de definición en el buffer
+        int length;         // largo del mensaje de definición
+
+        /**
+         * Posición del campo dentro del mensaje de datos (contando el
+         * byte de header), o -1 si la definición no lo incluye.
+         */
+        int fieldOffset(int num) {
+            int off = 1;
+            for (int i = 0; i < fieldNum.length; i++) {
+                if (fieldNum[i] == num) return off;
+                off += fieldSize[i];
+            }
+            return -1;
+        }
+
+        int fieldSize(int num) {
+            for (int i = 0; i < fieldNum.length; i++) {
+                if (fieldNum[i] == num) return fieldSize[i];
+            }
+            return 0;
+        }
+    }
+
+    /** Receptor de los mensajes recorridos. */
+    interface Visitor {
+
+        /** Comienzo de un archivo FIT (offset del header). */
+        default void fileStart(ByteBuffer buf, int offset, int headerSize) {
+        }
+
+        default void definition(ByteBuffer buf, Definition d) {
+        }
+
+        /**
+         * Mensaje de datos.
+         *
+         * @param offset    posición del byte de header
+         * @param length    largo total del mensaje (header incluido)
+         * @param timestamp timestamp vigente (campo 253 o header comprimido),
+         *                  -1 si todavía no apareció ninguno
+         */
+        void data(ByteBuffer buf, Definition d, int offset, int length,
+                  long timestamp, boolean compressed);
+    }
+
+    private FitScanner() {
+    }
+
+    /** Entero sin signo de 1 a 4 bytes en la posición dada. */
+    static long readUInt(ByteBuffer b, int off, int size, boolean bigEndian) {
+        long v = 0;
+        for (int i = 0; i < size; i++) {
+            int shift = bigEndian ? (size - 1 - i) * 8 : i * 8;
+            v |= (long) (b.get(off + i) & 0xFF) << shift;
+        }
+        return v;
+    }
+
+    /** Escribe un entero sin signo de 1 a 4 bytes en el arreglo. */
+    static void writeUInt(byte[] dst, int off, int size, boolean bigEndian, long v) {
+        for (int i = 0; i < size; i++) {
+            int shift = bigEndian ? (size - 1 - i) * 8 : i * 8;
+            dst[off + i] = (byte) (v >>> shift);
+        }
+    }
+
+    /** Tabla del CRC-16 de FIT (nibble a nibble). */
+    private static final int[] CRC_TABLE = {
+            0x0000, 0xCC01, 0xD801, 0x1400, 0xF001, 0x3C00, 0x2800, 0xE401,
+            0xA001, 0x6C00, 0x7800, 0xB401, 0x5000, 0x9C01, 0x8801, 0x4400
+    };
+
+    /** Acumula un byte en el CRC-16 de FIT. */
+    static int crc16(int crc, byte b) {
+        int tmp = CRC_TABLE[crc & 0xF];
+        crc = (crc >> 4) & 0x0FFF;
+        crc = crc ^ tmp ^ CRC_TABLE[b & 0xF];
+        tmp = CRC_TABLE[crc & 0xF];
+        crc = (crc >> 4) & 0x0FFF;
+        return crc ^ tmp ^ CRC_TABLE[(b >> 4) & 0xF];
+    }
+
+    /**
+     * Recorre todos los mensajes del buffer (entre position y limit).
+     */
+    static void scan(ByteBuffer b, Visitor v) {
+        int pos = b.position();
+        int limit = b.limit();
+
+        while (pos < limit) {
+            if (limit - pos < 12)
+                throw new FormatException("Header FIT incompleto en " + pos);
+            int headerSize = b.get(pos) & 0xFF;
+            if (headerSize < 12 || limit - pos < headerSize)
+                throw new FormatException("Tamaño de header inválido: " + headerSize);
+            if (b.get(pos + 8) != '.' || b.get(pos + 9) != 'F'
+                    || b.get(pos + 10) != 'I' || b.get(pos + 11) != 'T')
+                throw new FormatException("Falta la firma .FIT en " + pos);
+
+            long dataSize = readUInt(b, pos + 4, 4, false);
+            long end = pos + headerSize + dataSize;
+            if (end + 2 > limit)
+                throw new FormatException("Archivo FIT truncado");
+
+            v.fileStart(b, pos, headerSize);
+            scanMessages(b, pos + headerSize, (int) end, v);
+            pos = (int) end + 2;    // CRC del archivo
+        }
+    }
+
+    private static void scanMessages(ByteBuffer b, int p, int end, Visitor v) {
+        Definition[] defs = new Definition[16];
+        long lastTs = -1;
+
+        while (p < end) {
+            int h = b.get(p) & 0xFF;
+
+            if ((h & 0x80) != 0) {
+                // Header comprimido: el timestamp es un offset de 5 bits
+                Definition d = defs[(h >> 5) & 0x3];
+                if (d == null)
+                    throw new FormatException("Datos sin definición en " + p);
+                if (lastTs >= 0) {
+                    int off = h & 0x1F;
+                    long ts = (lastTs & ~0x1FL) + off;
+                    if (off < (lastTs & 0x1F)) ts += 0x20;
+                    lastTs = ts;
+                }
+                checkBounds(p, 1 + d.dataSize, end);
+                v.data(b, d, p, 1 + d.dataSize, lastTs, true);
+                p += 1 + d.dataSize;
+
+            } else if ((h & 0x40) != 0) {
+                checkBounds(p, 6, end);
+                Definition d = new Definition();
+                d.offset = p;
+                d.localType = h & 0x0F;
+                d.bigEndian = b.get(p + 2) == 1;
+                d.globalNum = (int) readUInt(b, p + 3, 2, d.bigEndian);
+                int n = b.get(p + 5) & 0xFF;
+                d.fieldNum = new int[n];
+                d.fieldSize = new int[n];
+                d.fieldType = new int[n];
+                checkBounds(p, 6 + 3 * n, end);
+                int q = p + 6;
+                for (int i = 0; i < n; i++, q += 3) {
+                    d.fieldNum[i] = b.get(q) & 0xFF;
+                    d.fieldSize[i] = b.get(q + 1) & 0xFF;
+                    d.fieldType[i] = b.get(q + 2) & 0xFF;
+                    d.dataSize += d.fieldSize[i];
+                }
+                if ((h & 0x20) != 0) {
+                    checkBounds(q, 1, end);
+                    int nDev = b.get(q) & 0xFF;
+                    checkBounds(q, 1 + 3 * nDev, end);
+                    for (int i = 0; i < nDev; i++) {
+                        d.devDataSize += b.get(q + 2 + 3 * i) & 0xFF;
+                    }
+                    q += 1 + 3 * nDev;
+                    d.dataSize += d.devDataSize;
+                }
+                d.length = q - p;
+                defs[d.localType] = d;
+                v.definition(b, d);
+                p = q;
+
+            } else {
+                Definition d = defs[h & 0x0F];
+                if (d == null)
+                    throw new FormatException("Datos sin definición en " + p);
+                checkBounds(p, 1 + d.dataSize, end);
+                int tsOff = d.fieldOffset(FIELD_TIMESTAMP);
+                if (tsOff > 0 && d.fieldSize(FIELD_TIMESTAMP) == 4) {
+                    long ts = readUInt(b, p + tsOff, 4, d.bigEndian);
+                    if (ts != UINT32_INVALID) lastTs = ts;
+                }
+                v.data(b, d, p, 1 + d.dataSize, lastTs, false);
+                p += 1 + d.dataSize;
+            }
+        }
+    }
+
+    private static void checkBounds(int p, int length, int end) {
+        if (p + length > end)
+            throw new FormatException("Mensaje fuera de los límites del archivo en " + p);
+    }
+}
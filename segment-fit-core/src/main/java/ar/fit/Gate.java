@@ -0,0 +1,134 @@
+/*
+ * Gate.java
+ *
+ * Línea de largada/llegada para interpolar el instante de cruce.
+ *
+ * Copyright (c) 2026 Daniel Sappa
+ * Licenciado bajo la Licencia MIT.
+ */
+
+package ar.fit;
+
+/**
+ * Segmento perpendicular a la dirección de marcha que pasa por un punto
+ * (la "línea" de un cronometraje). El instante del cruce se interpola
+ * linealmente entre los dos trackpoints que quedan a cada lado, por lo
+ * que el resultado no depende de la frecuencia de muestreo: a 1 Hz y
+ * 15 m/s el trackpoint más cercano puede estar hasta 0,5 s del cruce.
+ *
+ * Usa la misma proyección local que SegmentRTree (equirectangular en
+ * metros alrededor del punto), exacta a la escala de un radio.
+ */
+final class Gate {
+
+    private final double lat0, lon0;
+    private final double kx, ky;        // metros por grado
+    private final double dx, dy;        // dirección de marcha (unitaria)
+    private final double halfWidth;     // mitad del largo de la línea (m)
+
+    Gate(double lat, double lon, double dirX, double dirY, double halfWidth) {
+        this.lat0 = lat;
+        this.lon0 = lon;
+        this.ky = GeoGrid.METERS_PER_DEG;
+        this.kx = ky * Math.cos(Math.toRadians(lat));
+        double norm = Math.hypot(dirX, dirY);
+        this.dx = dirX / norm;
+        this.dy = dirY / norm;
+        this.halfWidth = halfWidth;
+    }
+
+    /**
+     * Línea en (lat, lon) con la dirección de marcha del track en el
+     * primer paso por el radio: desde el primer trackpoint dentro del
+     * radio hasta el primero que vuelve a salir.
+     *
+     * @param k kernel de distancia centrado en (lat, lon)
+     * @return null si el track no atraviesa el radio
+     */
+    static Gate atStart(Track pts, double lat, double lon, DistanceKernel k, double radius) {
+        int entry = -1;
+        for (int i = 0; i < pts.size(); i++) {
+            boolean inside = k.within(pts.lat(i), pts.lon(i), radius);
+            if (entry < 0) {
+                if (inside) entry = i;
+            } else if (!inside) {
+                return between(pts, lat, lon, entry, i, radius);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Línea en (lat, lon) con la dirección de marcha del track alrededor
+     * del trackpoint i (de i - 1 a i + 1).
+     *
+     * @return null si no se puede estimar la dirección
+     */
+    static Gate along(Track pts, int i, double lat, double lon, double halfWidth) {
+        return between(pts, lat, lon, Math.max(i - 1, 0), Math.min(i + 1, pts.size() - 1), halfWidth);
+    }
+
+    private static Gate between(Track pts, double lat, double lon, int from, int to, double halfWidth) {
+        double ky = GeoGrid.METERS_PER_DEG;
+        double kx = ky * Math.cos(Math.toRadians(lat));
+        double x = wrap(pts.lon(to) - pts.lon(from)) * kx;
+        double y = (pts.lat(to) - pts.lat(from)) * ky;
+        if (Math.hypot(x, y) < 1e-3) return null;
+        return new Gate(lat, lon, x, y, halfWidth);
+    }
+
+    private static double wrap(double dLon) {
+        if (dLon > 180) return dLon - 360;
+        if (dLon < -180) return dLon + 360;
+        return dLon;
+    }
+
+    /**
+     * Fracción del tramo a → b donde el track cruza la línea en el
+     * sentido de marcha, en (0, 1], o NaN si no la cruza. Un trackpoint
+     * justo sobre la línea es el cruce del tramo que llega a él (1) y
+     * no del que sale de él, así no se cuenta dos veces.
+     */
+    double fraction(Track pts, int a, int b) {
+        return fraction(pts.lat(a), pts.lon(a), pts.lat(b), pts.lon(b));
+    }
+
+    /** fraction() para un tramo dado por sus extremos en grados. */
+    double fraction(double latA, double lonA, double latB, double lonB) {
+        double xa = wrap(lonA - lon0) * kx;
+        double ya = (latA - lat0) * ky;
+        double xb = wrap(lonB - lon0) * kx;
+        double yb = (latB - lat0) * ky;
+
+        double sa = xa * dx + ya * dy;      // avance respecto de la línea
+        double sb = xb * dx + yb * dy;
+        if (!(sa < 0 && sb >= 0)) return Double.NaN;
+
+        double f = sa / (sa - sb);
+        double la = ya * dx - xa * dy;      // desvío lateral
+        double lb = yb * dx - xb * dy;
+        if (Math.abs(la + f * (lb - la)) > halfWidth) return Double.NaN;
+        return f;
+    }
+
+    /** Instante del cruce (segundos FIT) para una fracción del tramo a → b. */
+    static double time(Track pts, int a, int b, double f) {
+        return pts.ts[a] + f * (pts.ts[b] - pts.ts[a]);
+    }
+
+    /**
+     * Instante del cruce en los tramos vecinos al trackpoint i
+     * (i - 1 → i, i → i + 1), o el timestamp de i si no hay cruce.
+     */
+    double timeNear(Track pts, int i) {
+        if (i > 0) {
+            double f = fraction(pts, i - 1, i);
+            if (!Double.isNaN(f)) return time(pts, i - 1, i, f);
+        }
+        if (i + 1 < pts.size()) {
+            double f = fraction(pts, i, i + 1);
+            if (!Double.isNaN(f)) return time(pts, i, i + 1, f);
+        }
+        return pts.ts[i];
+    }
+}
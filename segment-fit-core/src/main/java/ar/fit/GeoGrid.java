@@ -0,0 +1,95 @@
+/*
+ * GeoGrid.java
+ *
+ * Índice espacial de grilla uniforme sobre coordenadas GPS.
+ *
+ * Copyright (c) 2026 Daniel Sappa
+ * Licenciado bajo la Licencia MIT.
+ */
+
+package ar.fit;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+/**
+ * Grilla uniforme en grados que agrupa identificadores enteros por celda.
+ *
+ * Las celdas miden cellMeters en latitud (y el mismo ángulo en longitud),
+ * de modo que una consulta por radio solo revisa las celdas vecinas
+ * en lugar de recorrer todos los puntos indexados.
+ *
+ * No contempla el cruce del antimeridiano (±180°), irrelevante para
+ * circuitos y segmentos de unos pocos kilómetros.
+ */
+class GeoGrid {
+
+    /** Metros por grado de latitud (radio medio 6371 km). */
+    static final double METERS_PER_DEG = 6371000.0 * Math.PI / 180.0;
+
+    /** Tamaño de celda en grados. */
+    final double cellDeg;
+
+    /**
+     * Celda → ids contenidos.
+     * La posición 0 de cada arreglo guarda la cantidad de ids usados.
+     */
+    private final Map<Long, int[]> cells = new HashMap<>();
+
+    GeoGrid(double cellMeters) {
+        if (!(cellMeters > 0))
+            throw new IllegalArgumentException("Tamaño de celda inválido: " + cellMeters);
+        this.cellDeg = cellMeters / METERS_PER_DEG;
+    }
+
+    /**
+     * Clave de celda: fila (lat) en los 32 bits altos, columna (lon) en los bajos.
+     */
+    private static long key(long row, long col) {
+        return (row << 32) | (col & 0xffffffffL);
+    }
+
+    /** Agrega un id en la celda que contiene la coordenada. */
+    void add(int id, double lat, double lon) {
+        long k = key((long) Math.floor(lat / cellDeg), (long) Math.floor(lon / cellDeg));
+        int[] ids = cells.get(k);
+        if (ids == null) {
+            ids = new int[4];
+            cells.put(k, ids);
+        } else if (ids[0] + 1 == ids.length) {
+            int[] grown = new int[ids.length * 2];
+            System.arraycopy(ids, 0, grown, 0, ids.length);
+            ids = grown;
+            cells.put(k, ids);
+        }
+        ids[++ids[0]] = id;
+    }
+
+    /**
+     * Visita todos los ids de las celdas que pueden contener puntos
+     * a menos de radiusMeters de la coordenada dada.
+     *
+     * Es un filtro conservador: el llamador debe medir la distancia real.
+     */
+    void forEachNear(double lat, double lon, double radiusMeters, IntConsumer visitor) {
+        double cellMeters = cellDeg * METERS_PER_DEG;
+        double cosLat = Math.max(Math.cos(Math.toRadians(lat)), 1e-6);
+
+        long row = (long) Math.floor(lat / cellDeg);
+        long col = (long) Math.floor(lon / cellDeg);
+        long dRow = (long) Math.ceil(radiusMeters / cellMeters);
+        long dCol = Math.min((long) Math.ceil(radiusMeters / (cellMeters * cosLat)),
+                (long) Math.ceil(360.0 / cellDeg));
+
+        for (long r = row - dRow; r <= row + dRow; r++) {
+            for (long c = col - dCol; c <= col + dCol; c++) {
+                int[] ids = cells.get(key(r, c));
+                if (ids == null) continue;
+                for (int i = 1; i <= ids[0]; i++) {
+                    visitor.accept(ids[i]);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Laps.java
+ *
+ * Vueltas individuales del modo loop y sus parciales.
+ *
+ * Copyright (c) 2026 Daniel Sappa
+ * Licenciado bajo la Licencia MIT.
+ */
+
+package ar.fit;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Separa las vueltas de una actividad sobre un circuito.
+ *
+ * Las vueltas las entrega LoopDetector en la misma pasada que clasifica
+ * los puntos contra la plantilla, con el mismo criterio de "sobre el
+ * circuito" que el modo loop. El límite de cada vuelta es el cruce de
+ * la línea de largada (Gate) que pasa por el punto inicial, con el
+ * instante interpolado entre los dos trackpoints vecinos; como índice
+ * se toma el trackpoint más cercano al cruce. Si en un paso por el radio
+ * del punto inicial no hay cruce válido (corte de GPS justo en la
+ * línea), el límite es el trackpoint más cercano al punto inicial, con
+ * su timestamp. Si el track se aleja de la plantilla más que el radio
+ * (boxes, desvío, corte de GPS largo), la vuelta en curso se descarta y
+ * la siguiente empieza en el próximo paso por el punto inicial.
+ *
+ * Las vueltas se obtienen con SegmentDetector.laps() y se escriben con
+ * SegmentWriter.writeLaps().
+ */
+public final class Laps {
+
+    /** Una vuelta completa con sus parciales. */
+    public static final class Lap {
+        public final int i0, i1;           // índices de inicio y fin en el track
+        public final double t0, t1;        // instantes interpolados (segundos FIT)
+        public final double seconds;       // tiempo de la vuelta
+        public final double distance;      // distancia recorrida (m)
+        public final double avgHr;         // FC media (NaN si no hay datos)
+
+        /**
+         * Parciales en O(1) con las sumas acumuladas de TrackStats.
+         */
+        Lap(int i0, double t0, int i1, double t1, TrackStats stats) {
+            this.i0 = i0;
+            this.t0 = t0;
+            this.i1 = i1;
+            this.t1 = t1;
+            this.seconds = t1 - t0;
+            this.distance = stats.distance(i0, i1);
+            this.avgHr = stats.avgHr(i0, i1);
+        }
+    }
+
+    private Laps() {
+    }
+
+    /**
+     * Detecta todas las vueltas completas y calcula sus parciales
+     * (SegmentDetector.laps mide la fase).
+     *
+     * @param detector detector del modo loop (SegmentDetector.loop)
+     */
+    static List<Lap> detect(Track points, SegmentDetector detector) {
+        TrackStats stats = points.stats();
+        List<Lap> laps = new ArrayList<>();
+        LoopDetector loop = detector.loopDetector(
+                (i0, t0, i1, t1) -> laps.add(new Lap(i0, t0, i1, t1, stats)));
+        for (int idx = 0; idx < points.size(); idx++) {
+            loop.add(points.ts[idx], points.lat[idx], points.lon[idx]);
+        }
+        loop.finish();
+        loop.requireCircuit();
+
+        if (laps.isEmpty())
+            throw new SegmentDetector.NotFoundException("No se detectaron vueltas completas");
+        return laps;
+    }
+}
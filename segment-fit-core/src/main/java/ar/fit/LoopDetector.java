@@ -0,0 +1,274 @@
+/*
+ * LoopDetector.java
+ *
+ * Detección del modo loop punto por punto, a medida que se decodifica.
+ *
+ * Copyright (c) 2026 Daniel Sappa
+ * Licenciado bajo la Licencia MIT.
+ */
+
+package ar.fit;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Detección del modo loop de SegmentDetector, punto por punto: recibe
+ * los trackpoints en orden (desde el listener del decoder o desde un
+ * Track), con los parámetros del detector que lo crea
+ * (SegmentDetector.loopDetector).
+ *
+ *  1. Hasta el cierre de la primera vuelta guarda las posiciones: la
+ *     plantilla va del primer paso por el punto inicial hasta que el
+ *     track sale del radio y vuelve a entrar.
+ *  2. Al cerrarse arma el matcher (R-tree, con --simplify, o vértices)
+ *     y clasifica los puntos ya guardados.
+ *  3. Desde ahí clasifica cada punto apenas llega, sin guardarlo.
+ *
+ * Junto con la clasificación registra los cruces de la línea de largada
+ * (Gate) sobre el circuito: los extremos del tramo se ubican en el cruce
+ * más cercano a la entrada al circuito que abre la primera vuelta
+ * completa y a la que cierra la última, así la duración se interpola
+ * sobre la línea. Como índice de cada cruce se toma el trackpoint más
+ * cercano.
+ *
+ * Con un LapListener además entrega cada vuelta completa apenas se
+ * cierra (ver Laps): el límite de una vuelta es el cruce de la línea en
+ * un paso por el radio del punto inicial, o el trackpoint más cercano al
+ * punto inicial si en ese paso no hubo cruce válido (corte de GPS justo
+ * en la línea). Al salir del circuito la vuelta en curso se descarta.
+ *
+ * La memoria queda acotada por los puntos hasta la primera vuelta y el
+ * resultado está listo al terminar la decodificación.
+ */
+final class LoopDetector {
+
+    /** Receptor de las vueltas completas, en orden. */
+    interface LapListener {
+        /**
+         * @param i0 índice del límite de inicio
+         * @param t0 instante del límite de inicio (segundos FIT)
+         * @param i1 índice del límite de fin
+         * @param t1 instante del límite de fin (segundos FIT)
+         */
+        void lap(int i0, double t0, int i1, double t1);
+    }
+
+    private final SegmentDetector detector;
+    private final Metrics metrics;
+    private final double radius;
+    private final boolean vertexMatch;
+    private final DistanceKernel start;
+    private final double startLat, startLon;
+
+    // Fase 1: puntos hasta el cierre de la plantilla
+    private Track prefix = new Track();
+    private int passes;             // pasos por el punto inicial (hasta 2)
+    private int i0 = -1;
+    private boolean leftRadius;
+
+    // Fase 2: clasificación contra la plantilla
+    private SegmentDetector.CircuitMatcher circuit;
+    private Gate gate;
+    private int count;
+    private int segStart = -1;
+    private int segEnd = -1;
+    private boolean onCircuit;
+    private boolean completedLap;
+    private double prevLat, prevLon;
+    private long prevTs;
+    private final List<Integer> crossings = new ArrayList<>();
+
+    // Vueltas: límite de la vuelta en curso y paso actual por el radio
+    private final LapListener laps;
+    private int lapStart = -1;
+    private double lapStartTime;
+    private boolean inGate;         // dentro del radio del punto inicial
+    private int best = -1;          // punto más cercano del paso actual
+    private long bestTs;
+    private double bestDist = Double.MAX_VALUE;
+    private int cross = -1;         // cruce de la línea en el paso actual
+    private double crossTime;
+
+    /**
+     * @param detector detector del modo loop con el punto inicial, el
+     *                 radio y los parámetros de la plantilla
+     * @param laps     receptor de las vueltas completas, o null
+     */
+    LoopDetector(SegmentDetector detector, LapListener laps) {
+        this.detector = detector;
+        this.metrics = detector.metrics;
+        this.startLat = detector.startLat;
+        this.startLon = detector.startLon;
+        this.radius = detector.radius;
+        this.vertexMatch = detector.vertexMatch;
+        this.start = detector.kernel(startLat, startLon);
+        this.laps = laps;
+    }
+
+    /** Agrega el siguiente trackpoint (posición en semicircles). */
+    void add(long timestamp, int latSemi, int lonSemi) {
+        if (circuit != null) {
+            classify(count++, timestamp, latSemi * Track.DEG, lonSemi * Track.DEG);
+            return;
+        }
+
+        int idx = prefix.add(timestamp, latSemi, lonSemi);
+        count++;
+        boolean inside = start.within(prefix.lat(idx), prefix.lon(idx), radius);
+        if (inside && passes < 2) passes++;
+        if (i0 < 0) {
+            if (inside) i0 = idx;
+            return;
+        }
+        if (!inside) leftRadius = true;
+        if (leftRadius && inside) {
+            buildTemplate(idx);
+        }
+    }
+
+    private void buildTemplate(int i1) {
+        circuit = detector.circuitMatcher(prefix, i0, i1);
+        gate = Gate.atStart(prefix, startLat, startLon, start, radius);
+        for (int idx = 0; idx <= i1; idx++) {
+            classify(idx, prefix.ts[idx], prefix.lat(idx), prefix.lon(idx));
+        }
+        // El R-tree copia los segmentos; el matcher por vértices los
+        // sigue leyendo del prefijo
+        if (!vertexMatch) prefix = null;
+    }
+
+    private void classify(int idx, long timestamp, double lat, double lon) {
+        metrics.increment(Metrics.Counter.POINTS_TESTED);
+        double d = circuit.minDist(lat, lon);
+
+        if (d > radius) {
+            // Fuera del circuito: la vuelta en curso no es completa
+            inGate = false;
+            cross = -1;
+            lapStart = -1;
+        } else {
+            // Cruce de la línea entre dos puntos sobre el circuito
+            if (onCircuit && gate != null) {
+                double f = gate.fraction(prevLat, prevLon, lat, lon);
+                if (!Double.isNaN(f)) {
+                    cross = f < 0.5 ? idx - 1 : idx;
+                    crossTime = prevTs + f * (timestamp - prevTs);
+                    crossings.add(cross);
+                }
+            }
+            pass(idx, timestamp, lat, lon);
+        }
+        prevLat = lat;
+        prevLon = lon;
+        prevTs = timestamp;
+
+        if (!onCircuit && d <= radius) {
+            onCircuit = true;
+            if (completedLap) {
+                if (segStart == -1) segStart = idx;
+                segEnd = idx;
+            }
+        }
+
+        if (onCircuit && d > radius) {
+            onCircuit = false;
+            completedLap = true;
+        }
+    }
+
+    /**
+     * Paso por el radio del punto inicial: termina al salir del radio, o
+     * en el cruce mismo si ningún trackpoint cayó dentro del radio, y
+     * su límite cierra la vuelta en curso.
+     */
+    private void pass(int idx, long timestamp, double lat, double lon) {
+        boolean inside = start.within(lat, lon, radius);
+        if (inside) {
+            double d = start.distance(lat, lon);
+            if (!inGate || d < bestDist) {
+                best = idx;
+                bestTs = timestamp;
+                bestDist = d;
+            }
+            inGate = true;
+        }
+        if (!inside) closePass();
+    }
+
+    private void closePass() {
+        if (!inGate && cross < 0) return;
+        int b = cross >= 0 ? cross : best;
+        double t = cross >= 0 ? crossTime : bestTs;
+        if (laps != null && lapStart >= 0 && b > lapStart) laps.lap(lapStart, lapStartTime, b, t);
+        lapStart = b;
+        lapStartTime = t;
+        inGate = false;
+        cross = -1;
+    }
+
+    /**
+     * Fin del track: cierra el paso por el radio en curso, que puede
+     * completar la última vuelta.
+     */
+    void finish() {
+        if (circuit != null) closePass();
+    }
+
+    /** Trackpoints recibidos. */
+    int size() {
+        return count;
+    }
+
+    /**
+     * Línea de largada (Gate.atStart sobre el track completo), o null si
+     * no se pudo estimar. Disponible una vez armada la plantilla.
+     */
+    Gate gate() {
+        return gate;
+    }
+
+    /**
+     * Tramo de vueltas completas con los puntos recibidos hasta ahora,
+     * con los extremos en los cruces de la línea (o en las entradas al
+     * circuito si la línea no se pudo estimar o nunca se cruzó).
+     *
+     * @return {i0, i1} índices de inicio y fin en el track
+     */
+    int[] result() {
+        requireCircuit();
+        if (segStart == -1 || segEnd == -1 || segEnd <= segStart)
+            throw new SegmentDetector.NotFoundException("No se detectaron vueltas completas");
+        if (crossings.isEmpty())
+            return new int[] { segStart, segEnd };
+
+        int i0 = nearestCrossing(segStart);
+        int i1 = nearestCrossing(segEnd);
+        if (i1 <= i0)
+            throw new SegmentDetector.NotFoundException("No se detectaron vueltas completas");
+        return new int[] { i0, i1 };
+    }
+
+    /**
+     * Verifica que se haya armado la plantilla del circuito.
+     *
+     * @throws SegmentDetector.NotFoundException si el track no pasó dos
+     *         veces por el punto inicial o no cerró la primera vuelta
+     */
+    void requireCircuit() {
+        if (circuit == null) {
+            if (passes < 2)
+                throw new SegmentDetector.NotFoundException("No se detectaron dos pasos por el punto inicial");
+            throw new SegmentDetector.NotFoundException("No se detectó el cierre del bucle");
+        }
+    }
+
+    /** Cruce de la línea más cercano (en trackpoints) al índice dado. */
+    private int nearestCrossing(int idx) {
+        int best = crossings.get(0);
+        for (int c : crossings) {
+            if (Math.abs(c - idx) < Math.abs(best - idx)) best = c;
+        }
+        return best;
+    }
+}
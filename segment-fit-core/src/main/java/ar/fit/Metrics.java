@@ -0,0 +1,252 @@
+/*
+ * Metrics.java
+ *
+ * Tiempos por fase y contadores de una corrida (--metrics).
+ *
+ * Copyright (c) 2026 Daniel Sappa
+ * Licenciado bajo la Licencia MIT.
+ */
+
+package ar.fit;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Instrumentación de las fases de segmentación, acumulada entre todos
+ * los archivos e hilos que usan la misma instancia y reportada como
+ * JSON al final.
+ *
+ * Cada fase suma tiempo de pared, cantidad de veces y bytes asignados
+ * por el hilo (si la JVM los informa). TEMPLATE ocurre dentro de MATCH
+ * y su tiempo está incluido en el de MATCH; en la detección streaming
+ * (SegmentDetector.detect(String)) la detección ocurre durante DECODE.
+ *
+ * TrackReader, SegmentDetector y SegmentWriter registran en la instancia
+ * que reciben con metrics(); por defecto en NONE, que no acumula nada.
+ * Mientras dura una fase la instancia queda asociada al hilo (y a las
+ * tareas de ParallelScan que lanza), así los contadores de los
+ * recorridos internos, como HAVERSINE, van a la misma instancia que la
+ * fase sin pasarla por cada llamada.
+ *
+ * Las mismas mediciones alimentan los eventos JFR: cada fase dentro
+ * de un SegmentJobEvent suma su duración al evento del archivo y emite
+ * un PhaseEvent, también con NONE.
+ *
+ * Con NONE y sin grabación JFR (el caso normal) phase() devuelve un
+ * Scope vacío y add() no hace nada.
+ *
+ * Uso típico:
+ *   Metrics metrics = new Metrics();
+ *   Track track = new TrackReader().metrics(metrics).read("actividad.fit");
+ *   System.err.println(metrics.json(System.nanoTime() - t0));
+ */
+public final class Metrics {
+
+    public enum Phase { DECODE, TEMPLATE, MATCH, ENCODE }
+
+    public enum Counter {
+        FILES,
+        RECORDS,            // trackpoints decodificados o leídos de la caché
+        HAVERSINE,          // distancias exactas calculadas
+        POINTS_TESTED,      // puntos comparados contra una referencia o plantilla
+        BYTES_READ,
+        BYTES_WRITTEN,
+        FAST_DECODE_FALLBACKS,  // archivos que --fast-decode no pudo leer (se usó el SDK)
+        PASSTHROUGH_FALLBACKS,  // tramos que --passthrough no pudo copiar (se reconstruyeron)
+        CACHE_ERRORS            // sidecars inválidos o que no se pudieron guardar
+    }
+
+    /** Instancia asociada al hilo durante una fase (ver Scope). */
+    private static final ThreadLocal<Metrics> CURRENT = new ThreadLocal<>();
+
+    private static final int PHASES = Phase.values().length;
+
+    private static final com.sun.management.ThreadMXBean THREADS = allocationBean();
+
+    private static final Scope EMPTY = new Scope(null, null);
+
+    /** No acumula mediciones; solo alimenta los eventos JFR. */
+    public static final Metrics NONE = new Metrics(false);
+
+    private final boolean enabled;
+    private final LongAdder[] nanos = adders(PHASES);
+    private final LongAdder[] calls = adders(PHASES);
+    private final LongAdder[] allocated = adders(PHASES);
+    private final LongAdder[] counters = adders(Counter.values().length);
+
+    /** Métricas nuevas, en cero. */
+    public Metrics() {
+        this(true);
+    }
+
+    private Metrics(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    private static LongAdder[] adders(int n) {
+        LongAdder[] a = new LongAdder[n];
+        for (int i = 0; i < n; i++) a[i] = new LongAdder();
+        return a;
+    }
+
+    private static com.sun.management.ThreadMXBean allocationBean() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) return null;
+        com.sun.management.ThreadMXBean b = (com.sun.management.ThreadMXBean) bean;
+        try {
+            if (!b.isThreadAllocatedMemorySupported()) return null;
+            b.setThreadAllocatedMemoryEnabled(true);
+            return b;
+        } catch (UnsupportedOperationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Instancia de la fase en curso en el hilo, o NONE. La usan los
+     * recorridos que no reciben las métricas (kernels, scans).
+     */
+    static Metrics current() {
+        Metrics m = CURRENT.get();
+        return m != null ? m : NONE;
+    }
+
+    /**
+     * Inicia la medición de una fase en el hilo actual; se cierra con
+     * try-with-resources.
+     */
+    public Scope phase(Phase p) {
+        return enabled || SegmentJobEvent.current() != null ? new Scope(this, p) : EMPTY;
+    }
+
+    /**
+     * Asocia la instancia al hilo actual sin medir una fase: las tareas
+     * de ParallelScan cuentan en las métricas de quien las lanzó.
+     */
+    Scope bind() {
+        return enabled ? new Scope(this, null) : EMPTY;
+    }
+
+    public void add(Counter c, long n) {
+        if (c == Counter.RECORDS) {
+            SegmentJobEvent job = SegmentJobEvent.current();
+            if (job != null) job.records += n;
+        }
+        if (enabled) counters[c.ordinal()].add(n);
+    }
+
+    public void increment(Counter c) {
+        if (enabled) counters[c.ordinal()].increment();
+    }
+
+    /** Suma el tamaño del archivo al contador indicado. */
+    void addFileSize(Counter c, String path) {
+        if (!enabled) return;
+        try {
+            counters[c.ordinal()].add(Files.size(Paths.get(path)));
+        } catch (IOException e) {
+            // El archivo no existe o no se puede leer: no se cuenta
+        }
+    }
+
+    private static long threadAllocated() {
+        return THREADS != null ? THREADS.getThreadAllocatedBytes(Thread.currentThread().getId()) : 0;
+    }
+
+    /** Medición en curso de una fase. */
+    public static final class Scope implements AutoCloseable {
+        private final Metrics metrics;      // null: scope vacío
+        private final Phase phase;          // null: solo asocia metrics al hilo
+        private final Metrics previous;
+        private final PhaseEvent event;
+        private final long t0;
+        private final long a0;
+
+        private Scope(Metrics metrics, Phase phase) {
+            this.metrics = metrics;
+            this.phase = phase;
+            this.previous = metrics != null ? CURRENT.get() : null;
+            if (metrics != null && metrics.enabled) CURRENT.set(metrics);
+            this.event = phase != null ? new PhaseEvent() : null;
+            this.t0 = phase != null ? System.nanoTime() : 0;
+            this.a0 = phase != null ? threadAllocated() : 0;
+            if (event != null) event.begin();
+        }
+
+        @Override
+        public void close() {
+            if (metrics == null) return;
+            if (metrics.enabled) {
+                if (previous != null) CURRENT.set(previous);
+                else CURRENT.remove();
+            }
+            if (phase == null) return;
+            long dt = System.nanoTime() - t0;
+            long da = threadAllocated() - a0;
+            if (metrics.enabled) {
+                int i = phase.ordinal();
+                metrics.nanos[i].add(dt);
+                metrics.calls[i].increment();
+                metrics.allocated[i].add(da);
+            }
+
+            SegmentJobEvent job = SegmentJobEvent.current();
+            if (job != null) job.add(phase, dt);
+            event.end();
+            if (event.shouldCommit()) {
+                event.phase = name(phase);
+                event.file = job != null ? job.file : null;
+                event.allocated = da;
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * Reporte JSON:
+     *
+     *   {"wallMillis":..,
+     *    "phases":{"decode":{"millis":..,"count":..,"allocatedBytes":..},..},
+     *    "counters":{"files":..,"records":..,"haversine":..,..}}
+     *
+     * allocatedBytes es null si la JVM no mide asignaciones por hilo.
+     */
+    public String json(long wallNanos) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.ROOT, "{\"wallMillis\":%.3f,\"phases\":{", wallNanos / 1e6));
+        for (Phase p : Phase.values()) {
+            int i = p.ordinal();
+            if (i > 0) sb.append(',');
+            sb.append(String.format(Locale.ROOT, "\"%s\":{\"millis\":%.3f,\"count\":%d,\"allocatedBytes\":%s}",
+                    name(p), nanos[i].sum() / 1e6, calls[i].sum(),
+                    THREADS != null ? String.valueOf(allocated[i].sum()) : "null"));
+        }
+        sb.append("},\"counters\":{");
+        for (Counter c : Counter.values()) {
+            if (c.ordinal() > 0) sb.append(',');
+            sb.append('"').append(name(c)).append("\":").append(counters[c.ordinal()].sum());
+        }
+        return sb.append("}}").toString();
+    }
+
+    /** DECODE → decode, POINTS_TESTED → pointsTested. */
+    static String name(Enum<?> e) {
+        StringBuilder sb = new StringBuilder();
+        boolean upper = false;
+        for (char ch : e.name().toCharArray()) {
+            if (ch == '_') {
+                upper = true;
+            } else {
+                sb.append(upper ? ch : Character.toLowerCase(ch));
+                upper = false;
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * ParallelScan.java
+ *
+ * Búsquedas sobre tracks muy largos repartidas en un ForkJoinPool.
+ *
+ * Copyright (c) 2026 Daniel Sappa
+ * Licenciado bajo la Licencia MIT.
+ */
+
+package ar.fit;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Versiones paralelas de SegmentDetector.nearestIndex y allPasses.
+ *
+ * El rango de índices se divide a la mitad hasta THRESHOLD puntos por
+ * tarea; cada hoja usa el mismo recorrido secuencial y los resultados
+ * parciales se combinan de izquierda a derecha:
+ *
+ *  - punto más cercano: gana la menor distancia y, ante empate, el
+ *    índice menor (el de la mitad izquierda), como en el recorrido
+ *    secuencial
+ *  - pasos: las listas se concatenan en orden de índice
+ *
+ * Las distancias se calculan con el mismo kernel y las comparaciones
+ * son exactas, por lo que el resultado es idéntico al secuencial. Cada
+ * hoja cuenta en las métricas del hilo que lanzó la búsqueda.
+ */
+final class ParallelScan {
+
+    /** Puntos por tarea (hoja del fork/join). */
+    static final int THRESHOLD = 1 << 16;
+
+    private ParallelScan() {
+    }
+
+    static SegmentDetector.Nearest nearest(Track pts, DistanceKernel k) {
+        return ForkJoinPool.commonPool().invoke(new NearestTask(pts, k, Metrics.current(), 0, pts.size()));
+    }
+
+    static List<Integer> passes(Track pts, DistanceKernel k, double radiusMeters) {
+        return ForkJoinPool.commonPool().invoke(
+                new PassesTask(pts, k, radiusMeters, Metrics.current(), 0, pts.size()));
+    }
+
+    private static final class NearestTask extends RecursiveTask<SegmentDetector.Nearest> {
+        private static final long serialVersionUID = 1L;
+
+        private final Track pts;
+        private final DistanceKernel k;
+        private final Metrics metrics;
+        private final int from, to;
+
+        NearestTask(Track pts, DistanceKernel k, Metrics metrics, int from, int to) {
+            this.pts = pts;
+            this.k = k;
+            this.metrics = metrics;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected SegmentDetector.Nearest compute() {
+            if (to - from <= THRESHOLD) {
+                try (Metrics.Scope m = metrics.bind()) {
+                    return SegmentDetector.nearest(pts, k, from, to);
+                }
+            }
+            int mid = (from + to) >>> 1;
+            NearestTask left = new NearestTask(pts, k, metrics, from, mid);
+            left.fork();
+            SegmentDetector.Nearest r = new NearestTask(pts, k, metrics, mid, to).compute();
+            SegmentDetector.Nearest l = left.join();
+            return l.distance <= r.distance ? l : r;
+        }
+    }
+
+    private static final class PassesTask extends RecursiveTask<List<Integer>> {
+        private static final long serialVersionUID = 1L;
+
+        private final Track pts;
+        private final DistanceKernel k;
+        private final double radiusMeters;
+        private final Metrics metrics;
+        private final int from, to;
+
+        PassesTask(Track pts, DistanceKernel k, double radiusMeters, Metrics metrics, int from, int to) {
+            this.pts = pts;
+            this.k = k;
+            this.radiusMeters = radiusMeters;
+            this.metrics = metrics;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected List<Integer> compute() {
+            if (to - from <= THRESHOLD) {
+                List<Integer> idxs = new ArrayList<>();
+                try (Metrics.Scope m = metrics.bind()) {
+                    SegmentDetector.passes(pts, k, radiusMeters, from, to, idxs);
+                }
+                return idxs;
+            }
+            int mid = (from + to) >>> 1;
+            PassesTask left = new PassesTask(pts, k, radiusMeters, metrics, from, mid);
+            left.fork();
+            List<Integer> r = new PassesTask(pts, k, radiusMeters, metrics, mid, to).compute();
+            List<Integer> l = left.join();
+            l.addAll(r);
+            return l;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * PhaseEvent.java
+ *
+ * Evento de Java Flight Recorder por fase de segmentación.
+ *
+ * Copyright (c) 2026 Daniel Sappa
+ * Licenciado bajo la Licencia MIT.
+ */
+
+package ar.fit;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Un evento ar.fit.Phase por cada fase medida con Metrics.phase dentro
+ * de un SegmentJobEvent: decode, template, match o encode. Queda en la
+ * línea de tiempo del hilo junto a las pausas de GC y los eventos de
+ * E/S de la misma grabación.
+ */
+@Name("ar.fit.Phase")
+@Label("Segment Phase")
+@Category("SegmentFit")
+@Description("Fase de la segmentación de un archivo FIT")
+@StackTrace(false)
+final class PhaseEvent extends Event {
+
+    @Label("Phase")
+    String phase;
+
+    @Label("File")
+    String file;
+
+    @Label("Allocated")
+    @Description("Bytes asignados por el hilo durante la fase")
+    @DataAmount
+    long allocated;
+}
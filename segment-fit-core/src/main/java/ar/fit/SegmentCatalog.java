@@ -0,0 +1,248 @@
+/*
+ * SegmentCatalog.java
+ *
+ * Catálogo de segmentos con nombre y búsqueda de todos los segmentos
+ * recorridos por una actividad en una sola pasada.
+ *
+ * Copyright (c) 2026 Daniel Sappa
+ * Licenciado bajo la Licencia MIT.
+ */
+
+package ar.fit;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Catálogo de segmentos conocidos (subidas, sprints, etc.).
+ *
+ * Formato del archivo, una línea por segmento:
+ *
+ *   nombre,lat1,lon1,lat2,lon2[,lat3,lon3...]
+ *
+ * Con dos puntos es un segmento inicio → fin; con más, los intermedios
+ * son puntos de control que deben recorrerse en orden. Las líneas vacías
+ * o que empiezan con '#' se ignoran.
+ *
+ * Todos los puntos de todos los segmentos se indexan en una grilla
+ * (celda → puntos de segmentos), de modo que cada trackpoint solo se
+ * compara con los puntos de segmentos cercanos: el costo de la pasada
+ * no depende del tamaño del catálogo.
+ *
+ * Uso típico:
+ *   SegmentCatalog catalog = SegmentCatalog.load(Paths.get("segmentos.csv"), 10, false);
+ *   List<SegmentCatalog.Match> matches = catalog.match(track);
+ */
+public final class SegmentCatalog {
+
+    /** Un tramo de la actividad que recorre un segmento del catálogo. */
+    public static final class Match {
+        public final String name;
+        public final int i0, i1;
+
+        Match(String name, int i0, int i1) {
+            this.name = name;
+            this.i0 = i0;
+            this.i1 = i1;
+        }
+    }
+
+    final double radius;
+    final boolean exactDistance;    // Haversine en todas las comparaciones
+
+    private final List<String> names = new ArrayList<>();
+
+    /**
+     * Puntos de todos los segmentos, aplanados.
+     * wpFirst[s] es el primer punto del segmento s y wpFirst[s + 1]
+     * el siguiente al último.
+     */
+    private double[] wpLat = new double[64];
+    private double[] wpLon = new double[64];
+    private int[] wpSeg = new int[64];
+    private int[] wpFirst = new int[16];
+    private int wpCount;
+
+    private final GeoGrid grid;
+
+    SegmentCatalog(double radius, boolean exactDistance) {
+        this.radius = radius;
+        this.exactDistance = exactDistance;
+        this.grid = new GeoGrid(radius);
+    }
+
+    /** Cantidad de segmentos del catálogo. */
+    public int size() {
+        return names.size();
+    }
+
+    /**
+     * Lee el catálogo desde un archivo de texto.
+     *
+     * @param radius        radio (m) alrededor de cada punto del segmento
+     * @param exactDistance Haversine en todas las comparaciones
+     *                      (--distance=exact)
+     * @throws IllegalArgumentException si una línea no tiene el formato
+     *         esperado
+     */
+    public static SegmentCatalog load(Path file, double radius, boolean exactDistance) throws IOException {
+        SegmentCatalog c = new SegmentCatalog(radius, exactDistance);
+        int lineNo = 0;
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            lineNo++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+
+            String[] f = line.split(",");
+            if (f.length < 5 || f.length % 2 == 0)
+                throw new IllegalArgumentException(
+                        file + ":" + lineNo + ": se espera nombre,lat,lon,lat,lon[,lat,lon...]");
+
+            double[] lat = new double[(f.length - 1) / 2];
+            double[] lon = new double[lat.length];
+            for (int k = 0; k < lat.length; k++) {
+                lat[k] = Double.parseDouble(f[1 + 2 * k].trim());
+                lon[k] = Double.parseDouble(f[2 + 2 * k].trim());
+            }
+            c.add(f[0].trim(), lat, lon);
+        }
+        return c;
+    }
+
+    /**
+     * Agrega un segmento con sus puntos (inicio, controles, fin).
+     */
+    void add(String name, double[] lat, double[] lon) {
+        int s = names.size();
+        names.add(name);
+        if (s + 2 > wpFirst.length) wpFirst = Arrays.copyOf(wpFirst, wpFirst.length * 2);
+        wpFirst[s] = wpCount;
+
+        for (int k = 0; k < lat.length; k++) {
+            if (wpCount == wpLat.length) {
+                wpLat = Arrays.copyOf(wpLat, wpCount * 2);
+                wpLon = Arrays.copyOf(wpLon, wpCount * 2);
+                wpSeg = Arrays.copyOf(wpSeg, wpCount * 2);
+            }
+            wpLat[wpCount] = lat[k];
+            wpLon[wpCount] = lon[k];
+            wpSeg[wpCount] = s;
+            grid.add(wpCount, lat[k], lon[k]);
+            wpCount++;
+        }
+        wpFirst[s + 1] = wpCount;
+    }
+
+    /**
+     * Recorre el track una vez y devuelve todos los segmentos recorridos,
+     * en orden de finalización.
+     *
+     * Por segmento se mantiene el próximo punto a alcanzar. Cada pasada
+     * por el radio del inicio comienza un intento nuevo; el inicio es el
+     * trackpoint más cercano al punto inicial en esa pasada y el fin el
+     * más cercano al punto final en la pasada que completa el segmento.
+     */
+    public List<Match> match(Track pts) {
+        int n = names.size();
+        int[] next = new int[n];            // 0: esperando inicio; k: próximo punto (relativo)
+        int[] startIdx = new int[n];
+        double[] startDist = new double[n];
+        int[] lastStartHit = new int[n];
+        int[] endIdx = new int[n];
+        double[] endDist = new double[n];
+        Arrays.fill(lastStartHit, -2);
+
+        List<Match> matches = new ArrayList<>();
+        int[] finishing = new int[8];       // segmentos dentro del radio final
+        int finishingCount = 0;
+        boolean[] endHit = new boolean[n];
+        int[] hits = new int[16];
+
+        for (int i = 0; i < pts.size(); i++) {
+            double lat = pts.lat(i);
+            double lon = pts.lon(i);
+            DistanceKernel k = DistanceKernel.at(lat, lon, exactDistance);
+
+            // Puntos de segmentos a menos de radius de este trackpoint
+            int[] found = { 0 };
+            int[][] buf = { hits };
+            grid.forEachNear(lat, lon, radius, w -> {
+                if (!k.within(wpLat[w], wpLon[w], radius)) return;
+                if (found[0] == buf[0].length) buf[0] = Arrays.copyOf(buf[0], found[0] * 2);
+                buf[0][found[0]++] = w;
+            });
+            hits = buf[0];
+
+            // Primero el avance (controles y fin), después los inicios
+            for (int h = 0; h < found[0]; h++) {
+                int w = hits[h];
+                int s = wpSeg[w];
+                int rel = w - wpFirst[s];
+                int last = wpFirst[s + 1] - wpFirst[s] - 1;
+                if (rel == 0 || next[s] == 0) continue;
+
+                if (rel == next[s] && rel < last) {
+                    next[s]++;
+                } else if (rel == last && (next[s] == last || next[s] == last + 1)) {
+                    double d = k.distance(wpLat[w], wpLon[w]);
+                    if (next[s] == last) {
+                        next[s] = last + 1;
+                        endDist[s] = Double.MAX_VALUE;
+                        if (finishingCount == finishing.length)
+                            finishing = Arrays.copyOf(finishing, finishingCount * 2);
+                        finishing[finishingCount++] = s;
+                    }
+                    if (d < endDist[s]) {
+                        endDist[s] = d;
+                        endIdx[s] = i;
+                    }
+                    endHit[s] = true;
+                }
+            }
+
+            // Segmentos que salieron del radio final: se confirma el match
+            for (int f = 0; f < finishingCount; f++) {
+                int s = finishing[f];
+                if (endHit[s]) {
+                    endHit[s] = false;
+                    continue;
+                }
+                matches.add(new Match(names.get(s), startIdx[s], endIdx[s]));
+                next[s] = 0;
+                finishing[f--] = finishing[--finishingCount];
+            }
+
+            // Una nueva pasada por el inicio reinicia el intento en curso
+            for (int h = 0; h < found[0]; h++) {
+                int w = hits[h];
+                int s = wpSeg[w];
+                int last = wpFirst[s + 1] - wpFirst[s] - 1;
+                if (w != wpFirst[s] || next[s] > last) continue;
+
+                double d = k.distance(wpLat[w], wpLon[w]);
+                boolean samePass = next[s] > 0 && lastStartHit[s] == i - 1;
+                if (!samePass) {
+                    next[s] = 1;
+                    startIdx[s] = i;
+                    startDist[s] = d;
+                } else if (next[s] == 1 && d < startDist[s]) {
+                    startIdx[s] = i;
+                    startDist[s] = d;
+                }
+                lastStartHit[s] = i;
+            }
+        }
+
+        // Segmentos que terminan con el track todavía dentro del radio final
+        for (int f = 0; f < finishingCount; f++) {
+            int s = finishing[f];
+            matches.add(new Match(names.get(s), startIdx[s], endIdx[s]));
+        }
+        return matches;
+    }
+}
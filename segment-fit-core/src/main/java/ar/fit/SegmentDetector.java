@@ -0,0 +1,420 @@
+/*
+ * SegmentDetector.java
+ *
+ * Detección del tramo de un track: inicio → fin o vueltas completas.
+ *
+ * Copyright (c) 2026 Daniel Sappa
+ * Licenciado bajo la Licencia MIT.
+ */
+
+package ar.fit;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Encuentra el tramo de un Track en memoria:
+ *
+ *  - between(): desde el punto más cercano a start hasta el más cercano
+ *    a end
+ *  - loop(): las vueltas completas a un circuito que pasa por start,
+ *    o cada vuelta por separado con laps()
+ *
+ * Con detect(String) el tramo se busca directamente sobre un archivo,
+ * sin cargar el track completo en memoria.
+ *
+ * Los parámetros se fijan al crearlo (factories y copias con
+ * exactDistance(), simplify(), parallel() y metrics()); detect() no
+ * modifica el detector ni el track, así que una instancia se reutiliza
+ * entre tracks e hilos.
+ *
+ * Uso típico:
+ *   SegmentDetector detector = SegmentDetector.loop(-34.60, -58.38, 10, false).simplify(0);
+ *   SegmentDetector.Span span = detector.detect(track);
+ */
+public final class SegmentDetector {
+
+    /**
+     * Tamaño de track desde el que nearestIndex y allPasses se reparten
+     * en varios hilos (salvo con parallel(false)).
+     */
+    static final int PARALLEL_THRESHOLD = 2 * ParallelScan.THRESHOLD;
+
+    /** Recorridos lineales del track: Vector API si está disponible. */
+    static final TrackScan SCAN = TrackScan.get();
+
+    final double startLat, startLon;
+    final double endLat, endLon;
+    final double radius;
+    final boolean loop;
+    final boolean vertexMatch;
+    final boolean exactDistance;
+    final boolean parallel;
+    final boolean simplify;
+    final double simplifyTolerance;
+    final Metrics metrics;
+
+    private SegmentDetector(
+            double startLat, double startLon,
+            double endLat, double endLon,
+            double radius, boolean loop, boolean vertexMatch,
+            boolean exactDistance, boolean parallel,
+            boolean simplify, double simplifyTolerance, Metrics metrics) {
+        this.startLat = startLat;
+        this.startLon = startLon;
+        this.endLat = endLat;
+        this.endLon = endLon;
+        this.radius = radius;
+        this.loop = loop;
+        this.vertexMatch = vertexMatch;
+        this.exactDistance = exactDistance;
+        this.parallel = parallel;
+        this.simplify = simplify;
+        this.simplifyTolerance = simplifyTolerance;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Tramo inicio → fin.
+     *
+     * @param radius semiancho (m) de las líneas de inicio y fin sobre las
+     *               que se interpolan los extremos
+     */
+    public static SegmentDetector between(
+            double startLat, double startLon,
+            double endLat, double endLon,
+            double radius) {
+        return new SegmentDetector(startLat, startLon, endLat, endLon, radius, false, false,
+                false, true, false, 0, Metrics.NONE);
+    }
+
+    /**
+     * Vueltas completas al circuito que pasa por start.
+     *
+     * @param radius      radio (m) del punto inicial y tolerancia al circuito
+     * @param vertexMatch medir contra los vértices de la plantilla en
+     *                    lugar de sus segmentos
+     */
+    public static SegmentDetector loop(double startLat, double startLon, double radius, boolean vertexMatch) {
+        return new SegmentDetector(startLat, startLon, 0, 0, radius, true, vertexMatch,
+                false, true, false, 0, Metrics.NONE);
+    }
+
+    /**
+     * Copia que fuerza Haversine en todas las comparaciones
+     * (--distance=exact). Por defecto se usa el kernel equirectangular de
+     * DistanceKernel, con los mismos resultados.
+     */
+    public SegmentDetector exactDistance(boolean exact) {
+        return new SegmentDetector(startLat, startLon, endLat, endLon, radius, loop, vertexMatch,
+                exact, parallel, simplify, simplifyTolerance, metrics);
+    }
+
+    /**
+     * Copia que simplifica la plantilla del loop con Douglas-Peucker
+     * antes de armar el R-tree (--simplify[=m]). No aplica a vertexMatch,
+     * que mide contra los vértices.
+     *
+     * @param tolerance distancia máxima (m) al trazado original, o 0 para
+     *                  usar radius / 4
+     */
+    public SegmentDetector simplify(double tolerance) {
+        return new SegmentDetector(startLat, startLon, endLat, endLon, radius, loop, vertexMatch,
+                exactDistance, parallel, true, tolerance, metrics);
+    }
+
+    /**
+     * Copia que reparte (o no) los recorridos de tracks largos en el
+     * ForkJoinPool común. Conviene desactivarlo cuando ya se procesan
+     * varios tracks en paralelo, como el modo batch.
+     */
+    public SegmentDetector parallel(boolean parallel) {
+        return new SegmentDetector(startLat, startLon, endLat, endLon, radius, loop, vertexMatch,
+                exactDistance, parallel, simplify, simplifyTolerance, metrics);
+    }
+
+    /**
+     * Copia que registra sus fases (MATCH, TEMPLATE y, con
+     * detect(String), DECODE) y contadores en metrics. Por defecto,
+     * Metrics.NONE.
+     */
+    public SegmentDetector metrics(Metrics metrics) {
+        return new SegmentDetector(startLat, startLon, endLat, endLon, radius, loop, vertexMatch,
+                exactDistance, parallel, simplify, simplifyTolerance, Objects.requireNonNull(metrics));
+    }
+
+    /** Kernel de distancia centrado en la coordenada dada. */
+    DistanceKernel kernel(double lat, double lon) {
+        return DistanceKernel.at(lat, lon, exactDistance);
+    }
+
+    /** Tamaño de track desde el que los recorridos se reparten en hilos. */
+    int parallelThreshold() {
+        return parallel ? PARALLEL_THRESHOLD : Integer.MAX_VALUE;
+    }
+
+    /**
+     * Tramo del track.
+     *
+     * @throws NotFoundException si el track no tiene puntos suficientes
+     *         o no se encuentra el tramo (el mensaje indica el motivo)
+     */
+    public Span detect(Track points) {
+        try (Metrics.Scope m = metrics.phase(Metrics.Phase.MATCH)) {
+            return find(points);
+        }
+    }
+
+    /**
+     * Tramo de un archivo, sin cargar el track completo: el archivo se
+     * decodifica dos veces con el SDK y solo quedan en memoria el tramo
+     * y un punto a cada lado (ver StreamDetector). Toda la búsqueda
+     * cuenta como fase DECODE.
+     *
+     * @throws NotFoundException como detect(Track)
+     */
+    public Streamed detect(String fitFile) throws Exception {
+        try (Metrics.Scope m = metrics.phase(Metrics.Phase.DECODE)) {
+            return loop ? StreamDetector.loop(this, fitFile) : StreamDetector.between(this, fitFile);
+        }
+    }
+
+    /**
+     * Cada vuelta completa al circuito por separado, con sus parciales
+     * (ver Laps). Requiere un detector del modo loop.
+     *
+     * @throws NotFoundException si el track no tiene puntos suficientes
+     *         o no completa ninguna vuelta
+     */
+    public List<Laps.Lap> laps(Track points) {
+        if (!loop) throw new IllegalStateException("laps() requiere un detector loop()");
+        try (Metrics.Scope m = metrics.phase(Metrics.Phase.MATCH)) {
+            if (points.size() < 2) {
+                throw new NotFoundException("No hay puntos suficientes");
+            }
+            return Laps.detect(points, this);
+        }
+    }
+
+    private Span find(Track points) {
+        if (points.size() < 2) {
+            throw new NotFoundException("No hay puntos suficientes");
+        }
+
+        if (loop) {
+            LoopDetector detector = loopDetector(null);
+            for (int idx = 0; idx < points.size(); idx++) {
+                detector.add(points.ts[idx], points.lat[idx], points.lon[idx]);
+            }
+            int[] range = detector.result();
+            return new Span(points, range[0], range[1], detector.gate(), detector.gate());
+        }
+
+        /**
+         * Encontrar índices de inicio y fin más cercanos
+         * a las coordenadas indicadas.
+         */
+        int i0 = nearestIndex(points, kernel(startLat, startLon), parallelThreshold());
+        int i1 = nearestIndex(points, kernel(endLat, endLon), parallelThreshold());
+        return new Span(points, i0, i1,
+                Gate.along(points, i0, startLat, startLon, radius),
+                Gate.along(points, i1, endLat, endLon, radius));
+    }
+
+    /**
+     * Tramo de un track: índices ordenados y duración con los extremos
+     * interpolados sobre las líneas de inicio y fin.
+     */
+    public static final class Span {
+        public final int i0, i1;
+        public final double seconds;
+
+        Span(Track points, int i0, int i1, Gate from, Gate to) {
+            // Asegurar orden correcto
+            if (i0 > i1) {
+                int tmp = i0; i0 = i1; i1 = tmp;
+                Gate g = from; from = to; to = g;
+            }
+            this.i0 = i0;
+            this.i1 = i1;
+            this.seconds = segmentSeconds(points, i0, i1, from, to);
+        }
+
+        /** Cantidad de trackpoints del tramo. */
+        public int points() {
+            return i1 - i0 + 1;
+        }
+    }
+
+    /**
+     * Resultado de detect(String): el tramo con solo sus puntos (más uno
+     * a cada lado); los índices de span son relativos a points.
+     */
+    public static final class Streamed {
+        public final Track points;
+        public final Span span;
+
+        Streamed(Track points, Span span) {
+            this.points = points;
+            this.span = span;
+        }
+    }
+
+    /**
+     * No se encontró el tramo: el track no tiene puntos suficientes o no
+     * recorre lo pedido (el mensaje indica el motivo). Cualquier otra
+     * excepción de la detección es un error del programa.
+     */
+    public static final class NotFoundException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        public NotFoundException(String msg) {
+            super(msg);
+        }
+    }
+
+    /**
+     * Duración del tramo i0..i1 con los extremos interpolados sobre las
+     * líneas de inicio y fin (sin línea, el timestamp del trackpoint).
+     */
+    static double segmentSeconds(Track points, int i0, int i1, Gate from, Gate to) {
+        double t0 = from != null ? from.timeNear(points, i0) : points.ts[i0];
+        double t1 = to != null ? to.timeNear(points, i1) : points.ts[i1];
+        return t1 - t0;
+    }
+
+    /**
+     * Búsqueda incremental del punto más cercano a una coordenada.
+     *
+     * Recibe los puntos de a uno, por lo que sirve tanto sobre un Track
+     * en memoria como durante la decodificación. Ante empates conserva
+     * el primer índice.
+     */
+    static final class Nearest {
+        final DistanceKernel k;
+        int index = -1;                     // -1 mientras no haya puntos
+        double distance = Double.MAX_VALUE; // Haversine al mejor punto
+
+        Nearest(DistanceKernel k) {
+            this.k = k;
+        }
+
+        void offer(int i, double lat, double lon) {
+            // Haversine solo para los candidatos que pueden mejorar el mínimo
+            if (k.lowerBound(lat, lon) >= distance) return;
+            double d = k.distance(lat, lon);
+            if (d < distance) {
+                distance = d;
+                index = i;
+            }
+        }
+    }
+
+    /**
+     * Devuelve el índice del punto más cercano al centro del kernel.
+     *
+     * Recorre el track completo; desde parallelThreshold puntos lo
+     * reparte en un ForkJoinPool (ver ParallelScan), con el mismo
+     * resultado que el recorrido secuencial.
+     */
+    static int nearestIndex(Track pts, DistanceKernel k, int parallelThreshold) {
+        Nearest n = pts.size() >= parallelThreshold
+                ? ParallelScan.nearest(pts, k)
+                : nearest(pts, k, 0, pts.size());
+        return Math.max(n.index, 0);
+    }
+
+    /**
+     * Punto más cercano entre los índices from (incluido) y to (excluido).
+     */
+    static Nearest nearest(Track pts, DistanceKernel k, int from, int to) {
+        Metrics.current().add(Metrics.Counter.POINTS_TESTED, to - from);
+        return SCAN.nearest(pts, k, from, to);
+    }
+
+    /**
+     * Devuelve todos los índices donde el track pasa
+     * a menos de radiusMeters del centro del kernel.
+     */
+    static List<Integer> allPasses(
+            Track pts,
+            DistanceKernel k,
+            double radiusMeters,
+            int parallelThreshold) {
+
+        if (pts.size() >= parallelThreshold) {
+            return ParallelScan.passes(pts, k, radiusMeters);
+        }
+        List<Integer> idxs = new ArrayList<>();
+        passes(pts, k, radiusMeters, 0, pts.size(), idxs);
+        return idxs;
+    }
+
+    /**
+     * Agrega a idxs, en orden, los pasos entre from (incluido) y to
+     * (excluido).
+     */
+    static void passes(Track pts, DistanceKernel k, double radiusMeters, int from, int to, List<Integer> idxs) {
+        Metrics.current().add(Metrics.Counter.POINTS_TESTED, to - from);
+        SCAN.passes(pts, k, radiusMeters, from, to, idxs);
+    }
+
+    /**
+     * Medición de distancia a la plantilla del circuito.
+     *
+     * Las implementaciones solo garantizan el valor exacto cuando es
+     * <= radius; más allá pueden devolver cualquier valor mayor que radius,
+     * que es todo lo que necesitan las comparaciones del detector de vueltas.
+     */
+    interface CircuitMatcher {
+        double minDist(double lat, double lon);
+    }
+
+    /**
+     * Plantilla medida a los vértices (índices i0..i1 del track),
+     * indexados en una grilla con celdas del tamaño del radio.
+     * Requiere un radio grande con muestreo espaciado.
+     */
+    static CircuitMatcher vertexMatcher(Track pts, int i0, int i1, double radius, boolean exact) {
+        GeoGrid grid = new GeoGrid(radius);
+        for (int i = i0; i <= i1; i++) {
+            grid.add(i, pts.lat(i), pts.lon(i));
+        }
+        return (lat, lon) -> {
+            double[] min = { Double.MAX_VALUE };
+            DistanceKernel k = DistanceKernel.at(lat, lon, exact);
+            grid.forEachNear(lat, lon, radius, i -> {
+                if (k.lowerBound(pts.lat(i), pts.lon(i)) >= min[0]) return;
+                double d = k.distance(pts.lat(i), pts.lon(i));
+                if (d < min[0]) min[0] = d;
+            });
+            return min[0];
+        };
+    }
+
+    /**
+     * Matcher de la plantilla i0..i1: por vértices (vertexMatch) o
+     * R-tree de segmentos, simplificado con simplify().
+     */
+    CircuitMatcher circuitMatcher(Track points, int i0, int i1) {
+        try (Metrics.Scope m = metrics.phase(Metrics.Phase.TEMPLATE)) {
+            if (vertexMatch)
+                return vertexMatcher(points, i0, i1, radius, exactDistance);
+            if (!simplify)
+                return new SegmentRTree(points, i0, i1, radius);
+            double tolerance = simplifyTolerance > 0 ? simplifyTolerance : radius / 4;
+            return new SegmentRTree(points, SegmentRTree.simplify(points, i0, i1, tolerance), radius);
+        }
+    }
+
+    /**
+     * Detector incremental del modo loop con los parámetros de este
+     * detector; detect() le entrega todos los puntos del track.
+     *
+     * @param laps receptor de las vueltas completas, o null
+     */
+    LoopDetector loopDetector(LoopDetector.LapListener laps) {
+        return new LoopDetector(this, laps);
+    }
+}
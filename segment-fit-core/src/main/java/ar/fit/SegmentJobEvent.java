@@ -0,0 +1,132 @@
+/*
+ * SegmentJobEvent.java
+ *
+ * Evento de Java Flight Recorder por archivo segmentado.
+ *
+ * Copyright (c) 2026 Daniel Sappa
+ * Licenciado bajo la Licencia MIT.
+ */
+
+package ar.fit;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Un evento ar.fit.SegmentJob por trabajo de segmentación (en la línea
+ * de comandos, cada archivo y cada pedido /segment del modo servidor),
+ * con el archivo, el modo, el radio, la cantidad de records y la
+ * duración de cada fase. Las fases se emiten además como PhaseEvent.
+ *
+ * Quien segmenta abre el evento con start() en el hilo del trabajo y lo
+ * cierra con finish(); las fases medidas en ese hilo (con cualquier
+ * instancia de Metrics, incluida NONE) se suman al evento.
+ *
+ * Sin una grabación JFR activa el evento no se registra y el costo es
+ * una instancia por archivo. Para grabar:
+ *
+ *   java -XX:StartFlightRecording=filename=segment.jfr ... ar.fit.cli.SegmentFit ...
+ *   jfr print --events ar.fit.SegmentJob segment.jfr
+ */
+@Name("ar.fit.SegmentJob")
+@Label("Segment Job")
+@Category("SegmentFit")
+@Description("Segmentación de un archivo FIT")
+@StackTrace(false)
+public final class SegmentJobEvent extends Event {
+
+    /** Trabajo en curso del hilo (null si el evento está desactivado). */
+    private static final ThreadLocal<SegmentJobEvent> CURRENT = new ThreadLocal<>();
+
+    @Label("File")
+    String file;
+
+    @Label("Mode")
+    @Description("start-end, loop, laps, laps-split, catalog o best; +stream con --stream")
+    String mode;
+
+    @Label("Radius")
+    double radius;
+
+    @Label("Records")
+    @Description("Trackpoints decodificados o leídos de la caché")
+    long records;
+
+    @Label("Segment Points")
+    long points;
+
+    @Label("Decode")
+    @Timespan(Timespan.NANOSECONDS)
+    long decode;
+
+    @Label("Template")
+    @Timespan(Timespan.NANOSECONDS)
+    long template;
+
+    @Label("Match")
+    @Timespan(Timespan.NANOSECONDS)
+    long match;
+
+    @Label("Encode")
+    @Timespan(Timespan.NANOSECONDS)
+    long encode;
+
+    @Label("Error")
+    String error;
+
+    /**
+     * Inicia el evento del archivo en el hilo actual.
+     *
+     * @param mode modo de segmentación, para agrupar los eventos
+     */
+    public static SegmentJobEvent start(String file, String mode, double radius) {
+        SegmentJobEvent e = new SegmentJobEvent();
+        if (e.isEnabled()) {
+            e.file = file;
+            e.mode = mode;
+            e.radius = radius;
+            CURRENT.set(e);
+            e.begin();
+        }
+        return e;
+    }
+
+    /** Trabajo en curso del hilo, o null. */
+    static SegmentJobEvent current() {
+        return CURRENT.get();
+    }
+
+    /** Suma la duración de una fase (ver Metrics.Scope). */
+    void add(Metrics.Phase phase, long nanos) {
+        switch (phase) {
+            case DECODE: decode += nanos; break;
+            case TEMPLATE: template += nanos; break;
+            case MATCH: match += nanos; break;
+            case ENCODE: encode += nanos; break;
+            default: break;
+        }
+    }
+
+    /** Cantidad de trackpoints del segmento resultante. */
+    public void points(long points) {
+        this.points = points;
+    }
+
+    /** El trabajo terminó con error (el mensaje de la excepción). */
+    public void error(Throwable e) {
+        this.error = e.getMessage() != null ? e.getMessage() : e.toString();
+    }
+
+    /** Cierra el trabajo y lo registra si hay una grabación activa. */
+    public void finish() {
+        if (CURRENT.get() != this) return;
+        CURRENT.remove();
+        end();
+        if (shouldCommit()) commit();
+    }
+}
@@ -0,0 +1,282 @@
+/*
+ * SegmentRTree.java
+ *
+ * R-tree empaquetado (STR) sobre los segmentos de la plantilla del circuito.
+ *
+ * Copyright (c) 2026 Daniel Sappa
+ * Licenciado bajo la Licencia MIT.
+ */
+
+package ar.fit;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Distancia punto → polilínea usando un R-tree estático.
+ *
+ * Los segmentos de la plantilla (puntos i0..i1 del track) se proyectan
+ * a un plano local equirectangular en metros, centrado en el primer
+ * vértice. Para circuitos de algunos kilómetros el error de la proyección
+ * es despreciable frente a la precisión del GPS.
+ *
+ * Las hojas se ordenan con Sort-Tile-Recursive (STR) y los niveles
+ * superiores agrupan nodos consecutivos de a NODE_SIZE, por lo que el
+ * árbol queda en arreglos planos sin objetos por nodo.
+ *
+ * Con --simplify la plantilla se reduce antes con Douglas-Peucker
+ * (simplify), en el mismo plano: el ruido del GPS en las detenciones y
+ * los vértices alineados no agregan segmentos al árbol.
+ */
+class SegmentRTree implements SegmentDetector.CircuitMatcher {
+
+    /** Hijos por nodo. */
+    static final int NODE_SIZE = 16;
+
+    private final double refLat;
+    private final double refLon;
+    private final double kx;        // metros por grado de longitud
+    private final double ky;        // metros por grado de latitud
+    private final double radius;
+
+    /** Extremos de cada segmento en metros, en orden STR. */
+    private final double[] ax, ay, bx, by;
+
+    /**
+     * Cajas por nivel: levels.get(0) son las hojas (un segmento cada una),
+     * el último nivel es la raíz. Cada caja ocupa 4 doubles
+     * (minX, minY, maxX, maxY) y el nodo j del nivel k cubre las
+     * entradas [j*NODE_SIZE, (j+1)*NODE_SIZE) del nivel k-1.
+     */
+    private final List<double[]> levels = new ArrayList<>();
+
+    /**
+     * @param radius distancia máxima de interés: minDist solo es exacta
+     *               hasta este valor
+     */
+    SegmentRTree(Track pts, int i0, int i1, double radius) {
+        this(pts, range(i0, i1), radius);
+    }
+
+    /**
+     * @param vertices índices del track que forman la polilínea, en orden
+     */
+    SegmentRTree(Track pts, int[] vertices, double radius) {
+        this.radius = radius;
+        this.refLat = pts.lat(vertices[0]);
+        this.refLon = pts.lon(vertices[0]);
+        this.ky = GeoGrid.METERS_PER_DEG;
+        this.kx = GeoGrid.METERS_PER_DEG * Math.cos(Math.toRadians(refLat));
+
+        // Un segmento por par de vértices consecutivos
+        // (o un segmento degenerado si la plantilla tiene un solo punto)
+        int last = vertices.length - 1;
+        int n = Math.max(last, 1);
+        double[][] segs = new double[n][];
+        for (int s = 0; s < n; s++) {
+            int a = vertices[s];
+            int b = vertices[Math.min(s + 1, last)];
+            segs[s] = new double[] {
+                    x(pts.lon(a)), y(pts.lat(a)),
+                    x(pts.lon(b)), y(pts.lat(b))
+            };
+        }
+
+        // STR: ordenar por centro en x, cortar en franjas verticales
+        // y ordenar cada franja por centro en y
+        int leaves = (n + NODE_SIZE - 1) / NODE_SIZE;
+        int slices = (int) Math.ceil(Math.sqrt(leaves));
+        int perSlice = slices * NODE_SIZE;
+        Arrays.sort(segs, Comparator.comparingDouble(g -> g[0] + g[2]));
+        for (int from = 0; from < n; from += perSlice) {
+            Arrays.sort(segs, from, Math.min(from + perSlice, n),
+                    Comparator.comparingDouble(g -> g[1] + g[3]));
+        }
+
+        ax = new double[n];
+        ay = new double[n];
+        bx = new double[n];
+        by = new double[n];
+        double[] boxes = new double[n * 4];
+        for (int s = 0; s < n; s++) {
+            double[] g = segs[s];
+            ax[s] = g[0];
+            ay[s] = g[1];
+            bx[s] = g[2];
+            by[s] = g[3];
+            boxes[s * 4] = Math.min(g[0], g[2]);
+            boxes[s * 4 + 1] = Math.min(g[1], g[3]);
+            boxes[s * 4 + 2] = Math.max(g[0], g[2]);
+            boxes[s * 4 + 3] = Math.max(g[1], g[3]);
+        }
+        levels.add(boxes);
+
+        // Niveles superiores hasta llegar a una sola raíz
+        while (boxes.length > 4) {
+            int count = boxes.length / 4;
+            int parents = (count + NODE_SIZE - 1) / NODE_SIZE;
+            double[] up = new double[parents * 4];
+            for (int p = 0; p < parents; p++) {
+                double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE;
+                double maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+                int end = Math.min((p + 1) * NODE_SIZE, count);
+                for (int c = p * NODE_SIZE; c < end; c++) {
+                    minX = Math.min(minX, boxes[c * 4]);
+                    minY = Math.min(minY, boxes[c * 4 + 1]);
+                    maxX = Math.max(maxX, boxes[c * 4 + 2]);
+                    maxY = Math.max(maxY, boxes[c * 4 + 3]);
+                }
+                up[p * 4] = minX;
+                up[p * 4 + 1] = minY;
+                up[p * 4 + 2] = maxX;
+                up[p * 4 + 3] = maxY;
+            }
+            levels.add(up);
+            boxes = up;
+        }
+    }
+
+    private static int[] range(int i0, int i1) {
+        int[] r = new int[i1 - i0 + 1];
+        for (int i = 0; i < r.length; i++) r[i] = i0 + i;
+        return r;
+    }
+
+    /**
+     * Douglas-Peucker iterativo sobre los puntos i0..i1, proyectados como
+     * en el árbol. Conserva los extremos y todo vértice a más de
+     * tolerance metros del segmento que lo reemplazaría, así que la
+     * polilínea resultante queda a menos de tolerance de la original y
+     * cada distancia medida cambia a lo sumo en tolerance.
+     *
+     * Se usa la distancia al segmento (no a la recta), porque en un
+     * circuito los extremos de la plantilla casi coinciden.
+     *
+     * @return índices del track de los vértices conservados, en orden
+     */
+    static int[] simplify(Track pts, int i0, int i1, double tolerance) {
+        int n = i1 - i0 + 1;
+        if (n <= 2) return range(i0, i1);
+
+        double refLat = pts.lat(i0);
+        double refLon = pts.lon(i0);
+        double ky = GeoGrid.METERS_PER_DEG;
+        double kx = GeoGrid.METERS_PER_DEG * Math.cos(Math.toRadians(refLat));
+        double[] x = new double[n];
+        double[] y = new double[n];
+        for (int i = 0; i < n; i++) {
+            x[i] = (pts.lon(i0 + i) - refLon) * kx;
+            y[i] = (pts.lat(i0 + i) - refLat) * ky;
+        }
+
+        boolean[] keep = new boolean[n];
+        keep[0] = true;
+        keep[n - 1] = true;
+        int kept = 2;
+        double tol2 = tolerance * tolerance;
+
+        // Pila de tramos (a, b) pendientes: cada vértice conservado
+        // agrega a lo sumo dos, por lo que alcanza con 2 * n enteros
+        int[] stack = new int[2 * n];
+        int sp = 0;
+        stack[sp++] = 0;
+        stack[sp++] = n - 1;
+        while (sp > 0) {
+            int b = stack[--sp];
+            int a = stack[--sp];
+            double max = -1;
+            int far = -1;
+            for (int i = a + 1; i < b; i++) {
+                double d = segDist2(x[a], y[a], x[b], y[b], x[i], y[i]);
+                if (d > max) {
+                    max = d;
+                    far = i;
+                }
+            }
+            if (max > tol2) {
+                keep[far] = true;
+                kept++;
+                stack[sp++] = a;
+                stack[sp++] = far;
+                stack[sp++] = far;
+                stack[sp++] = b;
+            }
+        }
+
+        int[] vertices = new int[kept];
+        for (int i = 0, v = 0; i < n; i++) {
+            if (keep[i]) vertices[v++] = i0 + i;
+        }
+        return vertices;
+    }
+
+    private double x(double lon) {
+        return (lon - refLon) * kx;
+    }
+
+    private double y(double lat) {
+        return (lat - refLat) * ky;
+    }
+
+    /**
+     * Distancia mínima (m) de la coordenada a la polilínea.
+     *
+     * Es exacta cuando el resultado es <= radius; en otro caso
+     * devuelve Double.MAX_VALUE sin recorrer el resto del árbol.
+     */
+    @Override
+    public double minDist(double lat, double lon) {
+        double[] best = { radius * radius };
+        boolean found = search(levels.size() - 1, 0, x(lon), y(lat), best);
+        return found ? Math.sqrt(best[0]) : Double.MAX_VALUE;
+    }
+
+    private boolean search(int level, int node, double px, double py, double[] best) {
+        double[] boxes = levels.get(level);
+        if (boxDist2(boxes, node, px, py) > best[0]) return false;
+
+        if (level == 0) {
+            double d = segDist2(node, px, py);
+            if (d <= best[0]) {
+                best[0] = d;
+                return true;
+            }
+            return false;
+        }
+
+        boolean found = false;
+        int count = levels.get(level - 1).length / 4;
+        int end = Math.min((node + 1) * NODE_SIZE, count);
+        for (int c = node * NODE_SIZE; c < end; c++) {
+            found |= search(level - 1, c, px, py, best);
+        }
+        return found;
+    }
+
+    /** Distancia al cuadrado del punto a la caja (0 si está adentro). */
+    private static double boxDist2(double[] boxes, int i, double px, double py) {
+        double dx = Math.max(Math.max(boxes[i * 4] - px, 0), px - boxes[i * 4 + 2]);
+        double dy = Math.max(Math.max(boxes[i * 4 + 1] - py, 0), py - boxes[i * 4 + 3]);
+        return dx * dx + dy * dy;
+    }
+
+    /** Distancia al cuadrado del punto al segmento s. */
+    private double segDist2(int s, double px, double py) {
+        return segDist2(ax[s], ay[s], bx[s], by[s], px, py);
+    }
+
+    /** Distancia al cuadrado del punto al segmento (ax, ay)-(bx, by). */
+    private static double segDist2(double ax, double ay, double bx, double by, double px, double py) {
+        double vx = bx - ax;
+        double vy = by - ay;
+        double wx = px - ax;
+        double wy = py - ay;
+        double len2 = vx * vx + vy * vy;
+        double t = len2 == 0 ? 0 : Math.max(0, Math.min(1, (wx * vx + wy * vy) / len2));
+        double dx = wx - t * vx;
+        double dy = wy - t * vy;
+        return dx * dx + dy * dy;
+    }
+}
@@ -0,0 +1,374 @@
+/*
+ * SegmentWriter.java
+ *
+ * Escritura del tramo detectado como un nuevo archivo FIT.
+ *
+ * Copyright (c) 2026 Daniel Sappa
+ * Licenciado bajo la Licencia MIT.
+ */
+
+package ar.fit;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+import com.garmin.fit.BufferEncoder;
+import com.garmin.fit.DateTime;
+import com.garmin.fit.Event;
+import com.garmin.fit.EventType;
+import com.garmin.fit.FileEncoder;
+import com.garmin.fit.FileIdMesg;
+import com.garmin.fit.LapMesg;
+import com.garmin.fit.Manufacturer;
+import com.garmin.fit.Mesg;
+import com.garmin.fit.RecordMesg;
+import com.garmin.fit.SessionMesg;
+import com.garmin.fit.Sport;
+import com.garmin.fit.SportMesg;
+
+/**
+ * Genera el FIT de un tramo.
+ *
+ * Con el FIT original (passthrough) copia los bytes de sus records
+ * (ver FitPassthrough); si el archivo no admite la copia directa, o sin
+ * original, reconstruye los records con el encoder del SDK. Las
+ * escrituras miden la fase ENCODE en las métricas de metrics().
+ *
+ * Es inmutable: una misma instancia se puede compartir entre hilos.
+ *
+ * Uso típico:
+ *   new SegmentWriter().write(track, span, null, out);
+ */
+public final class SegmentWriter {
+
+    private final boolean rebaseDistance;
+    private final Metrics metrics;
+
+    public SegmentWriter() {
+        this(false);
+    }
+
+    /**
+     * @param rebaseDistance con passthrough, reescribir la distance de
+     *                       los records para que el tramo empiece en 0 m
+     */
+    public SegmentWriter(boolean rebaseDistance) {
+        this(rebaseDistance, Metrics.NONE);
+    }
+
+    private SegmentWriter(boolean rebaseDistance, Metrics metrics) {
+        this.rebaseDistance = rebaseDistance;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Copia que registra sus escrituras (fase ENCODE, bytes escritos y
+     * tramos sin passthrough posible) en metrics. Por defecto,
+     * Metrics.NONE.
+     */
+    public SegmentWriter metrics(Metrics metrics) {
+        return new SegmentWriter(rebaseDistance, Objects.requireNonNull(metrics));
+    }
+
+    /**
+     * Escribe el tramo en out (que no se cierra).
+     *
+     * @param original el FIT del que se decodificó el track, para copiar
+     *                 sus records, o null para reconstruirlos
+     */
+    public void write(Track points, SegmentDetector.Span span, ByteBuffer original, OutputStream out)
+            throws IOException {
+        try (Metrics.Scope m = metrics.phase(Metrics.Phase.ENCODE)) {
+            if (original != null && passthrough(original, points, span.i0, span.i1, span.seconds, out))
+                return;
+            out.write(encodeSegment(points, span.i0, span.i1, span.seconds));
+        }
+    }
+
+    /**
+     * El tramo como FIT completo en memoria, con la misma lógica que
+     * write().
+     */
+    public byte[] encode(Track points, SegmentDetector.Span span, ByteBuffer original) throws IOException {
+        try (Metrics.Scope m = metrics.phase(Metrics.Phase.ENCODE)) {
+            if (original != null) {
+                ByteArrayOutputStream os = new ByteArrayOutputStream();
+                if (passthrough(original, points, span.i0, span.i1, span.seconds, os))
+                    return os.toByteArray();
+            }
+            return encodeSegment(points, span.i0, span.i1, span.seconds);
+        }
+    }
+
+    /**
+     * Escribe el tramo i0..i1 en el archivo out, con la duración entre
+     * los timestamps de los extremos.
+     */
+    public void write(String original, Track points, int i0, int i1, String out) throws IOException {
+        write(original, points, i0, i1, points.ts[i1] - points.ts[i0], out);
+    }
+
+    /**
+     * Escribe el tramo i0..i1 en el archivo out.
+     *
+     * Con original (modo --passthrough) copia los bytes originales de
+     * los records; si el archivo no admite la copia directa (o supera
+     * FitInput.MAX_MAPPED) vuelve a reconstruir los records con el
+     * encoder del SDK.
+     *
+     * @param original el FIT del que se leyó el track, o null para
+     *                 reconstruir los records
+     * @param seconds  duración del tramo para la sesión (por ejemplo,
+     *                 Span.seconds, con los extremos interpolados)
+     */
+    public void write(String original, Track points, int i0, int i1, double seconds, String out)
+            throws IOException {
+        try (Metrics.Scope m = metrics.phase(Metrics.Phase.ENCODE)) {
+            ByteBuffer raw = original != null ? map(original) : null;
+            if (raw != null) {
+                try (OutputStream os = new BufferedOutputStream(new FileOutputStream(out))) {
+                    if (passthrough(raw, points, i0, i1, seconds, os))
+                        return;
+                }
+            }
+            writeSegment(points, i0, i1, seconds, Collections.emptyList(), out);
+        } finally {
+            metrics.addFileSize(Metrics.Counter.BYTES_WRITTEN, out);
+        }
+    }
+
+    /**
+     * Escribe las vueltas en el archivo out: los records desde el inicio
+     * de la primera hasta el fin de la última, con un LapMesg al final
+     * de cada vuelta. Los records siempre se reconstruyen (la copia
+     * directa no agrega los LapMesg).
+     *
+     * @param laps vueltas de SegmentDetector.laps(points), no vacía
+     */
+    public void writeLaps(Track points, List<Laps.Lap> laps, String out) {
+        Laps.Lap first = laps.get(0);
+        Laps.Lap last = laps.get(laps.size() - 1);
+        try (Metrics.Scope m = metrics.phase(Metrics.Phase.ENCODE)) {
+            writeSegment(points, first.i0, last.i1, last.t1 - first.t0, laps, out);
+        } finally {
+            metrics.addFileSize(Metrics.Counter.BYTES_WRITTEN, out);
+        }
+    }
+
+    /**
+     * El FIT original mapeado en memoria, o null si supera
+     * FitInput.MAX_MAPPED (se cuenta en PASSTHROUGH_FALLBACKS).
+     */
+    private ByteBuffer map(String original) throws IOException {
+        try {
+            return FitInput.map(original);
+        } catch (FitInput.TooLargeException e) {
+            metrics.increment(Metrics.Counter.PASSTHROUGH_FALLBACKS);
+            return null;
+        }
+    }
+
+    /**
+     * Copia los records del tramo desde el FIT original (ver
+     * FitPassthrough).
+     *
+     * @return false si el archivo no admite la copia directa: no se
+     *         escribió nada en out y el tramo se debe reconstruir
+     *         (se cuenta en PASSTHROUGH_FALLBACKS)
+     */
+    private boolean passthrough(ByteBuffer original, Track points, int i0, int i1, double seconds,
+            OutputStream out) throws IOException {
+        try {
+            FitPassthrough.write(original, points, i0, i1, seconds,
+                    new TrackStats(points, i0, i1), rebaseDistance, out);
+            return true;
+        } catch (FitScanner.FormatException e) {
+            metrics.increment(Metrics.Counter.PASSTHROUGH_FALLBACKS);
+            return false;
+        }
+    }
+
+    /**
+     * Escribe los puntos i0..i1 del track como un nuevo archivo FIT.
+     */
+    static void writeSegment(Track points, int i0, int i1, String out) {
+        writeSegment(points, i0, i1, points.ts[i1] - points.ts[i0], Collections.emptyList(), out);
+    }
+
+    /**
+     * Escribe los puntos i0..i1 del track con un LapMesg al final de
+     * cada vuelta (las vueltas deben estar dentro de i0..i1 y ordenadas).
+     *
+     * @param seconds duración del tramo para la sesión
+     */
+    static void writeSegment(Track points, int i0, int i1, double seconds, List<Laps.Lap> laps, String out) {
+        FileEncoder encoder = new FileEncoder(new File(out));
+        writeMessages(points, i0, i1, seconds, laps, encoder::write);
+
+        /**
+         * Cierre del encoder (escribe CRC y footer FIT).
+         */
+        encoder.close();
+    }
+
+    /**
+     * Los puntos i0..i1 como FIT completo en memoria.
+     */
+    static byte[] encodeSegment(Track points, int i0, int i1, double seconds) {
+        BufferEncoder encoder = new BufferEncoder();
+        writeMessages(points, i0, i1, seconds, Collections.emptyList(), encoder::write);
+        return encoder.close();
+    }
+
+    /**
+     * Mensajes del FIT de un segmento, en orden: FileId, Sport, los
+     * records (con un Lap al final de cada vuelta) y Session.
+     *
+     * @param seconds tiempo total de la sesión (s)
+     */
+    static void writeMessages(
+            Track points, int i0, int i1, double seconds,
+            List<Laps.Lap> laps, Consumer<Mesg> encoder) {
+        /**
+         * Mensaje FileId obligatorio.
+         */
+        FileIdMesg fileId = new FileIdMesg();
+        fileId.setType(com.garmin.fit.File.ACTIVITY);
+        fileId.setManufacturer(Manufacturer.GARMIN);
+        fileId.setTimeCreated(new DateTime(Date.from(Instant.now())));
+        encoder.accept(fileId);
+
+        /**
+         * Mensaje Sport.
+         */
+        SportMesg sport = new SportMesg();
+        sport.setSport(Sport.CYCLING);
+        encoder.accept(sport);
+
+        /**
+         * Escritura de cada punto del segmento como RecordMesg.
+         * La distancia es la acumulada desde i0; las estadísticas se
+         * calculan solo sobre el tramo.
+         */
+        TrackStats stats = new TrackStats(points, i0, i1);
+        int lap = 0;
+        for (int i = i0; i <= i1; i++) {
+            RecordMesg r = new RecordMesg();
+            r.setTimestamp(new DateTime(points.ts[i]));
+            r.setPositionLat(points.lat[i]);
+            r.setPositionLong(points.lon[i]);
+            r.setDistance((float) stats.distance(i0, i));
+            if (points.hasHr.get(i)) r.setHeartRate(points.hr[i]);
+            if (points.hasSpeed.get(i)) r.setSpeed(points.speed[i]);
+            if (points.hasCadence.get(i)) r.setCadence(points.cadence[i]);
+            if (points.hasAltitude.get(i)) r.setAltitude(points.altitude[i]);
+            encoder.accept(r);
+
+            // El record límite cierra una vuelta y abre la siguiente
+            if (lap < laps.size() && laps.get(lap).i1 == i) {
+                encoder.accept(lapMesg(laps.get(lap), lap, points, stats));
+                lap++;
+            }
+        }
+
+        /**
+         * Mensaje Session.
+         * Marca el inicio del segmento como sesión independiente.
+         */
+        SessionMesg session = new SessionMesg();
+        session.setSport(Sport.CYCLING);
+        session.setStartTime(new DateTime(points.ts[i0]));
+        session.setTotalDistance((float) stats.distance(i0, i1));
+
+        session.setTotalElapsedTime((float) seconds);
+        session.setTotalTimerTime((float) seconds);
+        setSummary(session, stats, i0, i1);
+        if (!laps.isEmpty()) {
+            session.setFirstLapIndex(0);
+            session.setNumLaps(laps.size());
+        }
+
+        encoder.accept(session);
+    }
+
+    /**
+     * Mensaje Lap con los parciales de una vuelta.
+     *
+     * @param stats estadísticas de un tramo que contiene la vuelta
+     */
+    static LapMesg lapMesg(Laps.Lap lap, int index, Track points, TrackStats stats) {
+        LapMesg m = new LapMesg();
+        m.setMessageIndex(index);
+        m.setEvent(Event.LAP);
+        m.setEventType(EventType.STOP);
+        m.setSport(Sport.CYCLING);
+        m.setTimestamp(new DateTime(points.ts[lap.i1]));
+        m.setStartTime(new DateTime(points.ts[lap.i0]));
+        m.setTotalElapsedTime((float) lap.seconds);
+        m.setTotalTimerTime((float) lap.seconds);
+        m.setTotalDistance((float) lap.distance);
+        setSummary(m, stats, lap.i0, lap.i1);
+        return m;
+    }
+
+    /**
+     * Campos de resumen de un Session o Lap sobre el tramo i0..i1:
+     * FC media y máxima, velocidad media y máxima, ascenso y descenso.
+     * Los canales sin datos no se escriben (sin altitud en el tramo,
+     * tampoco ascenso ni descenso).
+     */
+    static void setSummary(Mesg m, TrackStats stats, int i0, int i1) {
+        double avgHr = stats.avgHr(i0, i1);
+        double maxHr = stats.maxHr(i0, i1);
+        double avgSpeed = stats.avgSpeed(i0, i1);
+        double maxSpeed = stats.maxSpeed(i0, i1);
+        boolean altitude = stats.hasAltitude(i0, i1);
+        int ascent = (int) Math.round(stats.ascent(i0, i1));
+        int descent = (int) Math.round(stats.descent(i0, i1));
+
+        if (m instanceof SessionMesg) {
+            SessionMesg s = (SessionMesg) m;
+            if (!Double.isNaN(avgHr)) s.setAvgHeartRate((short) Math.round(avgHr));
+            if (!Double.isNaN(maxHr)) s.setMaxHeartRate((short) Math.round(maxHr));
+            if (!Double.isNaN(avgSpeed)) s.setAvgSpeed((float) avgSpeed);
+            if (!Double.isNaN(maxSpeed)) s.setMaxSpeed((float) maxSpeed);
+            if (altitude) {
+                s.setTotalAscent(ascent);
+                s.setTotalDescent(descent);
+            }
+        } else if (m instanceof LapMesg) {
+            LapMesg l = (LapMesg) m;
+            if (!Double.isNaN(avgHr)) l.setAvgHeartRate((short) Math.round(avgHr));
+            if (!Double.isNaN(maxHr)) l.setMaxHeartRate((short) Math.round(maxHr));
+            if (!Double.isNaN(avgSpeed)) l.setAvgSpeed((float) avgSpeed);
+            if (!Double.isNaN(maxSpeed)) l.setMaxSpeed((float) maxSpeed);
+            if (altitude) {
+                l.setTotalAscent(ascent);
+                l.setTotalDescent(descent);
+            }
+        }
+    }
+
+    /**
+     * Distancia recorrida (Haversine) entre los puntos i0..i1, sumada
+     * solo sobre el tramo.
+     */
+    public static double segmentDistance(Track points, int i0, int i1) {
+        double d = 0;
+        for (int i = i0 + 1; i <= i1; i++) {
+            d += DistanceKernel.haversine(points.lat(i - 1), points.lon(i - 1), points.lat(i), points.lon(i));
+        }
+        return d;
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * StreamDetector.java
+ *
+ * Detección del tramo sobre un archivo sin cargar el track completo.
+ *
+ * Copyright (c) 2026 Daniel Sappa
+ * Licenciado bajo la Licencia MIT.
+ */
+
+package ar.fit;
+
+/**
+ * Modo streaming de SegmentDetector.detect(String).
+ *
+ * Primera pasada: decodifica el archivo sin guardar los trackpoints y
+ * ubica el tramo. Segunda pasada: guarda solo los trackpoints del tramo
+ * encontrado más un punto a cada lado, para estimar las líneas de inicio
+ * y fin e interpolar sus cruces igual que con el track completo. La
+ * memoria queda en O(segmento) en lugar de O(actividad), a costa de
+ * decodificar dos veces. Los llamadores miden la fase.
+ */
+final class StreamDetector {
+
+    private StreamDetector() {
+    }
+
+    /**
+     * Tramo inicio → fin: la primera pasada busca los trackpoints más
+     * cercanos a start y end.
+     */
+    static SegmentDetector.Streamed between(SegmentDetector d, String fitFile) throws Exception {
+        SegmentDetector.Nearest start = new SegmentDetector.Nearest(d.kernel(d.startLat, d.startLon));
+        SegmentDetector.Nearest end = new SegmentDetector.Nearest(d.kernel(d.endLat, d.endLon));
+        int[] n = { 0 };
+        TrackReader.decodeTrackpoints(fitFile, (record, m) -> {
+            double lat = m.getPositionLat() * Track.DEG;
+            double lon = m.getPositionLong() * Track.DEG;
+            start.offer(n[0], lat, lon);
+            end.offer(n[0], lat, lon);
+            n[0]++;
+        });
+        d.metrics.add(Metrics.Counter.RECORDS, n[0]);
+        d.metrics.add(Metrics.Counter.POINTS_TESTED, 2L * n[0]);
+        d.metrics.addFileSize(Metrics.Counter.BYTES_READ, fitFile);
+
+        if (n[0] < 2) {
+            throw new SegmentDetector.NotFoundException("No hay puntos suficientes");
+        }
+
+        int lo = Math.max(Math.min(start.index, end.index) - 1, 0);
+        int hi = Math.min(Math.max(start.index, end.index) + 1, n[0] - 1);
+        Track seg = range(d, fitFile, lo, hi);
+        int i0 = start.index - lo;
+        int i1 = end.index - lo;
+        return new SegmentDetector.Streamed(seg, new SegmentDetector.Span(seg, i0, i1,
+                Gate.along(seg, i0, d.startLat, d.startLon, d.radius),
+                Gate.along(seg, i1, d.endLat, d.endLon, d.radius)));
+    }
+
+    /**
+     * Modo loop: en la primera pasada LoopDetector clasifica cada
+     * trackpoint a medida que se decodifica, guardando solo los puntos
+     * hasta el cierre de la primera vuelta.
+     */
+    static SegmentDetector.Streamed loop(SegmentDetector d, String fitFile) throws Exception {
+        LoopDetector loop = d.loopDetector(null);
+        TrackReader.decodeTrackpoints(fitFile, (record, m) -> loop.add(
+                m.getTimestamp().getTimestamp(), m.getPositionLat(), m.getPositionLong()));
+        d.metrics.add(Metrics.Counter.RECORDS, loop.size());
+        d.metrics.addFileSize(Metrics.Counter.BYTES_READ, fitFile);
+
+        if (loop.size() < 2) {
+            throw new SegmentDetector.NotFoundException("No hay puntos suficientes");
+        }
+        int[] range = loop.result();
+        int lo = Math.max(range[0] - 1, 0);
+        int hi = Math.min(range[1] + 1, loop.size() - 1);
+        Track seg = range(d, fitFile, lo, hi);
+        return new SegmentDetector.Streamed(seg,
+                new SegmentDetector.Span(seg, range[0] - lo, range[1] - lo, loop.gate(), loop.gate()));
+    }
+
+    /**
+     * Segunda pasada: los trackpoints lo..hi del archivo.
+     */
+    private static Track range(SegmentDetector d, String fitFile, int lo, int hi) throws Exception {
+        Track seg = new Track(hi - lo + 1);
+        int[] idx = { 0 };
+        TrackReader.decodeTrackpoints(fitFile, (record, m) -> {
+            int i = idx[0]++;
+            if (i >= lo && i <= hi) TrackReader.addRecord(seg, record, m);
+        });
+        d.metrics.addFileSize(Metrics.Counter.BYTES_READ, fitFile);
+        return seg;
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Track.java
+ *
+ * Almacenamiento columnar (structure-of-arrays) de los trackpoints.
+ *
+ * Copyright (c) 2026 Daniel Sappa
+ * Licenciado bajo la Licencia MIT.
+ */
+
+package ar.fit;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Track en columnas de tipos primitivos.
+ *
+ * Reemplaza a una lista de objetos por punto: cada canal vive en su
+ * propio arreglo y los valores ausentes se marcan en un BitSet, así
+ * un archivo de 500k records ocupa unos pocos MB y no genera basura.
+ *
+ * Las posiciones se guardan en semicircles (el formato nativo FIT),
+ * por lo que reescribirlas en la salida no pierde precisión.
+ *
+ * Los tracks se obtienen con TrackReader; desde fuera del paquete son
+ * de solo lectura.
+ */
+public final class Track {
+
+    /** Conversión FIT semicircles → grados
+     *
+     * En FIT, lat/lon se almacenan como enteros en "semicircles".
+     * Fórmula oficial:
+     *   grados = semicircles * (180 / 2^31)
+     */
+    static final double DEG = 180.0 / Math.pow(2, 31);
+
+    int size;
+
+    int[] lat;          // Latitud (semicircles)
+    int[] lon;          // Longitud (semicircles)
+    long[] ts;          // Timestamp FIT (segundos desde 1989-12-31 UTC)
+    int[] record;       // Posición del record entre todos los records del FIT
+    short[] hr;         // Frecuencia cardíaca
+    float[] speed;      // Velocidad (m/s)
+    short[] cadence;    // Cadencia (rpm)
+    float[] altitude;   // Altitud (m)
+
+    final BitSet hasHr = new BitSet();
+    final BitSet hasSpeed = new BitSet();
+    final BitSet hasCadence = new BitSet();
+    final BitSet hasAltitude = new BitSet();
+
+    private TrackStats stats;   // se descarta al agregar puntos
+
+    Track() {
+        this(1024);
+    }
+
+    Track(int capacity) {
+        capacity = Math.max(capacity, 16);
+        lat = new int[capacity];
+        lon = new int[capacity];
+        ts = new long[capacity];
+        record = new int[capacity];
+        hr = new short[capacity];
+        speed = new float[capacity];
+        cadence = new short[capacity];
+        altitude = new float[capacity];
+    }
+
+    /** Cantidad de trackpoints. */
+    public int size() {
+        return size;
+    }
+
+    /** Latitud del punto i en grados. */
+    public double lat(int i) {
+        return lat[i] * DEG;
+    }
+
+    /** Longitud del punto i en grados. */
+    public double lon(int i) {
+        return lon[i] * DEG;
+    }
+
+    /** Timestamp FIT del punto i (segundos desde 1989-12-31 UTC). */
+    public long timestamp(int i) {
+        return ts[i];
+    }
+
+    /**
+     * Memoria aproximada de las columnas (según la capacidad reservada,
+     * no la cantidad de puntos) y de los BitSet de canales presentes.
+     */
+    public long bytes() {
+        long columns = 32L * ts.length;     // lat, lon, ts, record, hr, speed, cadence, altitude
+        long bits = (hasHr.size() + hasSpeed.size() + hasCadence.size() + hasAltitude.size()) / 8;
+        return columns + bits;
+    }
+
+    /**
+     * Agrega un punto con posición y timestamp.
+     * Los canales opcionales se completan luego con los setters.
+     *
+     * @return índice del punto agregado
+     */
+    int add(long timestamp, int latSemi, int lonSemi) {
+        if (size == ts.length) grow();
+        stats = null;
+        int i = size++;
+        ts[i] = timestamp;
+        lat[i] = latSemi;
+        lon[i] = lonSemi;
+        return i;
+    }
+
+    /**
+     * Estadísticas de rangos del track (se construyen en la primera
+     * llamada y se reutilizan hasta que se agregue otro punto).
+     */
+    TrackStats stats() {
+        if (stats == null) stats = new TrackStats(this);
+        return stats;
+    }
+
+    /**
+     * Posición del record del punto i entre todos los mensajes record
+     * del archivo (incluidos los que no son trackpoints), para que
+     * FitPassthrough copie exactamente los records del tramo.
+     */
+    void setRecord(int i, int v) {
+        record[i] = v;
+    }
+
+    void setHr(int i, short v) {
+        hr[i] = v;
+        hasHr.set(i);
+    }
+
+    void setSpeed(int i, float v) {
+        speed[i] = v;
+        hasSpeed.set(i);
+    }
+
+    void setCadence(int i, short v) {
+        cadence[i] = v;
+        hasCadence.set(i);
+    }
+
+    void setAltitude(int i, float v) {
+        altitude[i] = v;
+        hasAltitude.set(i);
+    }
+
+    private void grow() {
+        int n = ts.length + (ts.length >> 1);
+        lat = Arrays.copyOf(lat, n);
+        lon = Arrays.copyOf(lon, n);
+        ts = Arrays.copyOf(ts, n);
+        record = Arrays.copyOf(record, n);
+        hr = Arrays.copyOf(hr, n);
+        speed = Arrays.copyOf(speed, n);
+        cadence = Arrays.copyOf(cadence, n);
+        altitude = Arrays.copyOf(altitude, n);
+    }
+}
@@ -0,0 +1,255 @@
+/*
+ * TrackCache.java
+ *
+ * Caché en disco de tracks decodificados.
+ *
+ * Copyright (c) 2026 Daniel Sappa
+ * Licenciado bajo la Licencia MIT.
+ */
+
+package ar.fit;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+
+/**
+ * Guarda las columnas de un Track ya decodificado en un archivo propio
+ * (sidecar), identificado por el SHA-256 del FIT y el decoder que lo
+ * generó (FitRecordDecoder o el SDK). Las siguientes
+ * segmentaciones del mismo archivo, con cualquier parámetro, mapean el
+ * sidecar y copian las columnas en bloque sin decodificar el FIT.
+ *
+ * Formato (little endian):
+ *
+ *   magic "SFTK" | versión int | n int | canales int
+ *   lat int[n] | lon int[n] | ts long[n] | record int[n]
+ *   por cada canal presente, en orden hr, speed, cadence, altitude:
+ *     palabras int | BitSet long[palabras] | valores (short o float)[n]
+ *
+ * Los canales sin ningún valor no se guardan. Un sidecar con otra
+ * versión, truncado o inválido se ignora y se vuelve a generar.
+ */
+final class TrackCache {
+
+    static final int MAGIC = 'S' | 'F' << 8 | 'T' << 16 | 'K' << 24;
+
+    /** Cambiar al modificar el formato o lo que guarda el decoder. */
+    static final int VERSION = 2;
+
+    /** Directorio del sidecar cuando no se indica uno (junto al FIT). */
+    static final String DEFAULT_DIR = ".segment-fit";
+
+    static final String EXTENSION = ".sft";
+
+    private static final int HR = 1;
+    private static final int SPEED = 2;
+    private static final int CADENCE = 4;
+    private static final int ALTITUDE = 8;
+
+    private TrackCache() {
+    }
+
+    /**
+     * Track del archivo: desde el sidecar si existe, o decodificado y
+     * guardado para la próxima vez.
+     *
+     * @param reader decodifica el FIT cuando no hay sidecar válido
+     * @param dir directorio de la caché, o null para usar DEFAULT_DIR
+     *            junto a cada archivo
+     */
+    static Track get(TrackReader reader, String fitFile, Path dir) throws Exception {
+        ByteBuffer buf;
+        try {
+            buf = FitInput.map(fitFile);
+        } catch (FitInput.TooLargeException e) {
+            return reader.decode(fitFile);
+        }
+
+        if (dir == null) {
+            Path parent = Paths.get(fitFile).toAbsolutePath().getParent();
+            dir = parent.resolve(DEFAULT_DIR);
+        }
+        Path sidecar = dir.resolve(FitInput.sha256(buf) + decoder(reader) + EXTENSION);
+
+        if (Files.isRegularFile(sidecar)) {
+            try {
+                return load(sidecar);
+            } catch (IOException | RuntimeException e) {
+                // Sidecar inválido: se regenera
+                Metrics.current().increment(Metrics.Counter.CACHE_ERRORS);
+            }
+        }
+
+        Track t = reader.decode(buf);
+        try {
+            store(t, sidecar);
+        } catch (IOException e) {
+            // Sin caché para este archivo; la próxima lectura lo decodifica
+            Metrics.current().increment(Metrics.Counter.CACHE_ERRORS);
+        }
+        return t;
+    }
+
+    /**
+     * Sufijo del decoder en el nombre del sidecar: la decodificación
+     * rápida y la del SDK no comparten tracks.
+     */
+    static String decoder(TrackReader reader) {
+        return reader.fastDecode() ? ".fast" : ".sdk";
+    }
+
+    /**
+     * Carga un sidecar mapeándolo en memoria.
+     */
+    static Track load(Path sidecar) throws IOException {
+        ByteBuffer b;
+        try (FileChannel ch = FileChannel.open(sidecar, StandardOpenOption.READ)) {
+            b = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size()).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        if (b.remaining() < 16 || b.getInt() != MAGIC)
+            throw new IOException("no es un sidecar de track");
+        if (b.getInt() != VERSION)
+            throw new IOException("versión distinta");
+        int n = b.getInt();
+        int channels = b.getInt();
+        if (n < 0 || b.remaining() < 20L * n)
+            throw new IOException("truncado");
+
+        Track t = new Track(n);
+        t.size = n;
+        b.asIntBuffer().get(t.lat, 0, n);
+        b.position(b.position() + 4 * n);
+        b.asIntBuffer().get(t.lon, 0, n);
+        b.position(b.position() + 4 * n);
+        b.asLongBuffer().get(t.ts, 0, n);
+        b.position(b.position() + 8 * n);
+        b.asIntBuffer().get(t.record, 0, n);
+        b.position(b.position() + 4 * n);
+
+        if ((channels & HR) != 0) {
+            loadBits(b, n, t.hasHr);
+            b.asShortBuffer().get(t.hr, 0, n);
+            b.position(b.position() + 2 * n);
+        }
+        if ((channels & SPEED) != 0) {
+            loadBits(b, n, t.hasSpeed);
+            b.asFloatBuffer().get(t.speed, 0, n);
+            b.position(b.position() + 4 * n);
+        }
+        if ((channels & CADENCE) != 0) {
+            loadBits(b, n, t.hasCadence);
+            b.asShortBuffer().get(t.cadence, 0, n);
+            b.position(b.position() + 2 * n);
+        }
+        if ((channels & ALTITUDE) != 0) {
+            loadBits(b, n, t.hasAltitude);
+            b.asFloatBuffer().get(t.altitude, 0, n);
+            b.position(b.position() + 4 * n);
+        }
+        if (b.hasRemaining())
+            throw new IOException("bytes sobrantes");
+        return t;
+    }
+
+    /**
+     * Lee los bits de presencia de un canal: la cantidad de palabras se
+     * valida contra el track y los bytes restantes antes de reservarlas,
+     * para que un sidecar dañado no pida un arreglo enorme.
+     */
+    private static void loadBits(ByteBuffer b, int n, BitSet bits) throws IOException {
+        int count = b.getInt();
+        if (count < 0 || count > (n + 63) / 64 || 8L * count > b.remaining())
+            throw new IOException("bits de presencia inválidos");
+        long[] words = new long[count];
+        b.asLongBuffer().get(words);
+        b.position(b.position() + 8 * words.length);
+        bits.or(BitSet.valueOf(words));
+    }
+
+    /**
+     * Escribe el sidecar en un archivo temporal del mismo directorio y
+     * lo renombra, para que otro proceso (o hilo del batch) nunca lea
+     * un sidecar a medio escribir.
+     */
+    static void store(Track t, Path sidecar) throws IOException {
+        int n = t.size();
+        long[] hr = t.hasHr.toLongArray();
+        long[] speed = t.hasSpeed.toLongArray();
+        long[] cadence = t.hasCadence.toLongArray();
+        long[] altitude = t.hasAltitude.toLongArray();
+
+        int channels = (hr.length > 0 ? HR : 0) | (speed.length > 0 ? SPEED : 0)
+                | (cadence.length > 0 ? CADENCE : 0) | (altitude.length > 0 ? ALTITUDE : 0);
+        long size = 16 + 20L * n
+                + (hr.length > 0 ? 4 + 8L * hr.length + 2L * n : 0)
+                + (speed.length > 0 ? 4 + 8L * speed.length + 4L * n : 0)
+                + (cadence.length > 0 ? 4 + 8L * cadence.length + 2L * n : 0)
+                + (altitude.length > 0 ? 4 + 8L * altitude.length + 4L * n : 0);
+        if (size > Integer.MAX_VALUE)
+            throw new IOException("track demasiado grande para la caché");
+
+        ByteBuffer b = ByteBuffer.allocate((int) size).order(ByteOrder.LITTLE_ENDIAN);
+        b.putInt(MAGIC).putInt(VERSION).putInt(n).putInt(channels);
+        b.asIntBuffer().put(t.lat, 0, n);
+        b.position(b.position() + 4 * n);
+        b.asIntBuffer().put(t.lon, 0, n);
+        b.position(b.position() + 4 * n);
+        b.asLongBuffer().put(t.ts, 0, n);
+        b.position(b.position() + 8 * n);
+        b.asIntBuffer().put(t.record, 0, n);
+        b.position(b.position() + 4 * n);
+
+        if (hr.length > 0) {
+            storeBits(b, hr);
+            b.asShortBuffer().put(t.hr, 0, n);
+            b.position(b.position() + 2 * n);
+        }
+        if (speed.length > 0) {
+            storeBits(b, speed);
+            b.asFloatBuffer().put(t.speed, 0, n);
+            b.position(b.position() + 4 * n);
+        }
+        if (cadence.length > 0) {
+            storeBits(b, cadence);
+            b.asShortBuffer().put(t.cadence, 0, n);
+            b.position(b.position() + 2 * n);
+        }
+        if (altitude.length > 0) {
+            storeBits(b, altitude);
+            b.asFloatBuffer().put(t.altitude, 0, n);
+            b.position(b.position() + 4 * n);
+        }
+        b.flip();
+
+        Path dir = sidecar.getParent();
+        Files.createDirectories(dir);
+        Path tmp = Files.createTempFile(dir, sidecar.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                while (b.hasRemaining()) ch.write(b);
+            }
+            try {
+                Files.move(tmp, sidecar, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, sidecar, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private static void storeBits(ByteBuffer b, long[] words) {
+        b.putInt(words.length);
+        b.asLongBuffer().put(words);
+        b.position(b.position() + 8 * words.length);
+    }
+}
@@ -0,0 +1,237 @@
+/*
+ * TrackReader.java
+ *
+ * Lectura de los trackpoints de un FIT: archivo, stream o buffer.
+ *
+ * Copyright (c) 2026 Daniel Sappa
+ * Licenciado bajo la Licencia MIT.
+ */
+
+package ar.fit;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Objects;
+
+import com.garmin.fit.Decode;
+import com.garmin.fit.MesgBroadcaster;
+import com.garmin.fit.RecordMesg;
+
+/**
+ * Decodifica los trackpoints de un FIT en un Track.
+ *
+ * Con fastDecode los records se leen con FitRecordDecoder en lugar del
+ * SDK; ante cualquier estructura inesperada se vuelve al SDK. Con
+ * caché (solo para archivos) el track se guarda en un sidecar y las
+ * lecturas siguientes no decodifican el FIT (ver TrackCache). Las
+ * lecturas miden la fase DECODE en las métricas de metrics().
+ *
+ * Es inmutable: una misma instancia se puede compartir entre hilos.
+ *
+ * Uso típico:
+ *   TrackReader reader = new TrackReader(true);
+ *   Track track = reader.read(in);
+ */
+public final class TrackReader {
+
+    private final boolean fastDecode;
+    private final boolean cache;
+    private final Path cacheDir;
+    private final Metrics metrics;
+
+    /** Decodifica con el SDK. */
+    public TrackReader() {
+        this(false);
+    }
+
+    /**
+     * @param fastDecode decodificar con FitRecordDecoder cuando la
+     *                   estructura del archivo lo permite
+     */
+    public TrackReader(boolean fastDecode) {
+        this(fastDecode, false, null);
+    }
+
+    /**
+     * @param fastDecode decodificar con FitRecordDecoder cuando la
+     *                   estructura del archivo lo permite
+     * @param cache      usar la caché de tracks al leer archivos
+     * @param cacheDir   directorio de la caché, o null para guardar cada
+     *                   sidecar junto a su FIT
+     */
+    public TrackReader(boolean fastDecode, boolean cache, Path cacheDir) {
+        this(fastDecode, cache, cacheDir, Metrics.NONE);
+    }
+
+    private TrackReader(boolean fastDecode, boolean cache, Path cacheDir, Metrics metrics) {
+        this.fastDecode = fastDecode;
+        this.cache = cache;
+        this.cacheDir = cacheDir;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Copia que registra sus lecturas (fase DECODE, records, bytes
+     * leídos y fallas de la decodificación rápida o de la caché) en
+     * metrics. Por defecto, Metrics.NONE.
+     */
+    public TrackReader metrics(Metrics metrics) {
+        return new TrackReader(fastDecode, cache, cacheDir, Objects.requireNonNull(metrics));
+    }
+
+    /** Decodifica con FitRecordDecoder cuando es posible. */
+    boolean fastDecode() {
+        return fastDecode;
+    }
+
+    /**
+     * Todos los trackpoints del archivo: desde la caché de tracks o
+     * decodificando el FIT.
+     */
+    public Track read(String fitFile) throws Exception {
+        try (Metrics.Scope m = metrics.phase(Metrics.Phase.DECODE)) {
+            Track points = cache ? TrackCache.get(this, fitFile, cacheDir) : decode(fitFile);
+            metrics.add(Metrics.Counter.RECORDS, points.size());
+            metrics.addFileSize(Metrics.Counter.BYTES_READ, fitFile);
+            return points;
+        }
+    }
+
+    /**
+     * Todos los trackpoints de un FIT leído de un stream (no se cierra).
+     *
+     * Con fastDecode el contenido se lee completo en memoria para
+     * decodificarlo en bloque; con el SDK se decodifica a medida que
+     * se lee.
+     */
+    public Track read(InputStream in) throws IOException {
+        try (Metrics.Scope m = metrics.phase(Metrics.Phase.DECODE)) {
+            Track points;
+            if (fastDecode) {
+                points = decode(ByteBuffer.wrap(in.readAllBytes()));
+            } else {
+                Track t = new Track();
+                decodeTrackpoints(in, (record, r) -> addRecord(t, record, r));
+                points = t;
+            }
+            metrics.add(Metrics.Counter.RECORDS, points.size());
+            return points;
+        }
+    }
+
+    /**
+     * Todos los trackpoints de un FIT ya en memoria, entre la posición
+     * y el límite del buffer (que no se modifican).
+     */
+    public Track read(ByteBuffer buf) {
+        try (Metrics.Scope m = metrics.phase(Metrics.Phase.DECODE)) {
+            Track points = decode(buf);
+            metrics.add(Metrics.Counter.RECORDS, points.size());
+            return points;
+        }
+    }
+
+    /**
+     * Decodifica todos los trackpoints de un FIT ya en memoria
+     * (por ejemplo, recibido por el modo servidor), sin medir la fase:
+     * la mide quien llama.
+     */
+    Track decode(ByteBuffer buf) {
+        if (fastDecode) {
+            try {
+                return FitRecordDecoder.decode(buf);
+            } catch (FitScanner.FormatException e) {
+                metrics.increment(Metrics.Counter.FAST_DECODE_FALLBACKS);
+            }
+        }
+
+        Track points = new Track();
+        decodeTrackpoints(new FitInput.ByteBufferInputStream(buf),
+                (record, m) -> addRecord(points, record, m));
+        return points;
+    }
+
+    /**
+     * Decodifica todos los trackpoints del archivo en memoria, sin caché.
+     */
+    Track decode(String fitFile) throws Exception {
+        if (fastDecode) {
+            try {
+                return FitRecordDecoder.decode(FitInput.map(fitFile));
+            } catch (FitScanner.FormatException | FitInput.TooLargeException e) {
+                metrics.increment(Metrics.Counter.FAST_DECODE_FALLBACKS);
+            }
+        }
+
+        Track points = new Track();
+        decodeTrackpoints(fitFile, (record, m) -> addRecord(points, record, m));
+        return points;
+    }
+
+    /**
+     * Un record sirve como trackpoint si tiene posición GPS y timestamp.
+     */
+    static boolean isTrackpoint(RecordMesg m) {
+        return m.getPositionLat() != null && m.getPositionLong() != null
+                && m.getTimestamp() != null;
+    }
+
+    /**
+     * Receptor de los trackpoints de decodeTrackpoints.
+     */
+    interface TrackpointListener {
+        /**
+         * @param record posición del record entre todos los records del
+         *               archivo, incluidos los que no son trackpoints
+         */
+        void onTrackpoint(int record, RecordMesg m);
+    }
+
+    /**
+     * Copia los campos de interés de un trackpoint al track.
+     */
+    static void addRecord(Track points, int record, RecordMesg m) {
+        int i = points.add(
+                m.getTimestamp().getTimestamp(),
+                m.getPositionLat(),
+                m.getPositionLong());
+        points.setRecord(i, record);
+
+        Short hr = m.getHeartRate();
+        if (hr != null) points.setHr(i, hr);
+        Float speed = m.getSpeed();
+        if (speed != null) points.setSpeed(i, speed);
+        Short cadence = m.getCadence();
+        if (cadence != null) points.setCadence(i, cadence);
+        Float altitude = m.getAltitude();
+        if (altitude != null) points.setAltitude(i, altitude);
+    }
+
+    /**
+     * Decodifica el archivo FIT entregando cada trackpoint al listener.
+     * Los records sin posición GPS o sin timestamp se ignoran.
+     */
+    static void decodeTrackpoints(String fitFile, TrackpointListener listener) throws Exception {
+        try (InputStream in = FitInput.open(fitFile)) {
+            decodeTrackpoints(in, listener);
+        }
+    }
+
+    static void decodeTrackpoints(InputStream in, TrackpointListener listener) {
+        /**
+         * Decoder FIT y broadcaster de mensajes.
+         * El broadcaster permite registrar listeners por tipo de mensaje.
+         */
+        Decode decode = new Decode();
+        MesgBroadcaster broadcaster = new MesgBroadcaster(decode);
+        int[] records = { 0 };
+        broadcaster.addListener((RecordMesg m) -> {
+            int record = records[0]++;
+            if (isTrackpoint(m)) listener.onTrackpoint(record, m);
+        });
+
+        decode.read(in, broadcaster);
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * TrackScan.java
+ *
+ * Recorridos lineales del track contra un punto de referencia.
+ *
+ * Copyright (c) 2026 Daniel Sappa
+ * Licenciado bajo la Licencia MIT.
+ */
+
+package ar.fit;
+
+import java.util.List;
+
+/**
+ * Los dos recorridos que dominan el costo sobre tracks largos: el punto
+ * más cercano y los pasos a menos de un radio, sobre el rango de
+ * índices [from, to).
+ *
+ * Hay dos implementaciones con resultados idénticos:
+ *
+ *  - Scalar: un punto por iteración (Java 11)
+ *  - VectorTrackScan: varios puntos por instrucción con la Vector API
+ *    (jdk.incubator.vector). Se compila solo con el perfil Maven
+ *    "vector" (src/main/java17, Java 17) y se usa si la JVM se inició
+ *    con --add-modules jdk.incubator.vector
+ *
+ * get() elige la implementación una sola vez, por reflexión, para que
+ * el resto del código siga compilando y corriendo en Java 11.
+ */
+interface TrackScan {
+
+    /** Clase de la implementación vectorial (perfil "vector"). */
+    String VECTOR_CLASS = "ar.fit.VectorTrackScan";
+
+    /**
+     * Punto más cercano al centro de k entre from (incluido) y to
+     * (excluido).
+     */
+    SegmentDetector.Nearest nearest(Track pts, DistanceKernel k, int from, int to);
+
+    /**
+     * Agrega a idxs, en orden, los índices entre from y to con
+     * k.within(lat, lon, radius).
+     */
+    void passes(Track pts, DistanceKernel k, double radius, int from, int to, List<Integer> idxs);
+
+    /**
+     * Implementación vectorial si está disponible, o la escalar.
+     * -Dsegmentfit.scalar=true fuerza la escalar.
+     */
+    static TrackScan get() {
+        if (!Boolean.getBoolean("segmentfit.scalar")) {
+            TrackScan v = vector();
+            if (v != null) return v;
+        }
+        return new Scalar();
+    }
+
+    /**
+     * La implementación vectorial, o null si no se compiló, la JVM es
+     * anterior a Java 17 o no se agregó el módulo jdk.incubator.vector.
+     */
+    static TrackScan vector() {
+        try {
+            return (TrackScan) Class.forName(VECTOR_CLASS).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+
+    final class Scalar implements TrackScan {
+
+        @Override
+        public SegmentDetector.Nearest nearest(Track pts, DistanceKernel k, int from, int to) {
+            SegmentDetector.Nearest n = new SegmentDetector.Nearest(k);
+            for (int i = from; i < to; i++) {
+                n.offer(i, pts.lat(i), pts.lon(i));
+            }
+            return n;
+        }
+
+        @Override
+        public void passes(Track pts, DistanceKernel k, double radius, int from, int to, List<Integer> idxs) {
+            for (int i = from; i < to; i++) {
+                if (k.within(pts.lat(i), pts.lon(i), radius)) {
+                    idxs.add(i);
+                }
+            }
+        }
+    }
+}
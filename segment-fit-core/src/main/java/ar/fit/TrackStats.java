@@ -0,0 +1,232 @@
+/*
+ * TrackStats.java
+ *
+ * Estadísticas de cualquier tramo del track en tiempo constante.
+ *
+ * Copyright (c) 2026 Daniel Sappa
+ * Licenciado bajo la Licencia MIT.
+ */
+
+package ar.fit;
+
+/**
+ * Resúmenes de rangos [i0, i1] del track en O(1), tras una construcción
+ * lineal sobre los puntos que cubre (todo el track o un tramo):
+ *
+ *  - sumas acumuladas de distancia (Haversine), FC, ascenso y descenso
+ *  - máximos de FC y velocidad con una sparse table por bloques
+ *
+ * Track.stats() la construye una sola vez para todo el track y la
+ * comparten las vueltas y los mejores esfuerzos. La escritura de un
+ * segmento construye una propia solo sobre el tramo, sin recorrer el
+ * resto del track.
+ */
+final class TrackStats {
+
+    private final Track points;
+
+    /** Primer punto cubierto: los arreglos se indexan desde from. */
+    private final int from;
+
+    /** dist[i]: distancia desde el punto from hasta el from + i (m). */
+    final double[] dist;
+
+    /** Puntos from..from+i-1: suma y cantidad de valores de FC. */
+    final long[] hrSum;
+    final int[] hrCount;
+
+    /**
+     * Puntos from..from+i-1 con FC: suma de FC × segundos hasta el punto
+     * siguiente y segundos cubiertos (FC media ponderada por tiempo).
+     */
+    private final long[] hrTimeSum;
+    private final long[] hrTime;
+
+    /** Puntos from..from+i-1 con altitud. */
+    private final int[] altCount;
+
+    /**
+     * Ascenso/descenso acumulado hasta el punto i (m), entre puntos
+     * consecutivos con altitud.
+     */
+    private final double[] ascent;
+    private final double[] descent;
+
+    private final RangeMax hrMax;
+    private final RangeMax speedMax;
+
+    TrackStats(Track points) {
+        this(points, 0, points.size() - 1);
+    }
+
+    /**
+     * Estadísticas de los puntos from..to: solo admite consultas de
+     * rangos dentro de ese tramo.
+     */
+    TrackStats(Track points, int from, int to) {
+        this.points = points;
+        this.from = from;
+        int n = Math.max(to - from + 1, 0);
+        dist = new double[n];
+        hrSum = new long[n + 1];
+        hrCount = new int[n + 1];
+        hrTimeSum = new long[n + 1];
+        hrTime = new long[n + 1];
+        altCount = new int[n + 1];
+        ascent = new double[n];
+        descent = new double[n];
+        float[] hr = new float[n];
+        float[] speed = new float[n];
+
+        int lastAlt = -1;
+        for (int i = 0; i < n; i++) {
+            int p = from + i;
+            if (i > 0) {
+                dist[i] = dist[i - 1] + DistanceKernel.haversine(
+                        points.lat(p - 1), points.lon(p - 1),
+                        points.lat(p), points.lon(p));
+                ascent[i] = ascent[i - 1];
+                descent[i] = descent[i - 1];
+            }
+
+            boolean hasHr = points.hasHr.get(p);
+            hrSum[i + 1] = hrSum[i] + (hasHr ? points.hr[p] : 0);
+            hrCount[i + 1] = hrCount[i] + (hasHr ? 1 : 0);
+            hr[i] = hasHr ? points.hr[p] : Float.NEGATIVE_INFINITY;
+            long dt = hasHr && i + 1 < n ? points.ts[p + 1] - points.ts[p] : 0;
+            hrTimeSum[i + 1] = hrTimeSum[i] + dt * points.hr[p];
+            hrTime[i + 1] = hrTime[i] + dt;
+            speed[i] = points.hasSpeed.get(p) ? points.speed[p] : Float.NEGATIVE_INFINITY;
+
+            boolean hasAlt = points.hasAltitude.get(p);
+            altCount[i + 1] = altCount[i] + (hasAlt ? 1 : 0);
+            if (hasAlt) {
+                if (lastAlt >= 0) {
+                    double d = points.altitude[p] - points.altitude[lastAlt];
+                    if (d > 0) ascent[i] += d;
+                    else descent[i] -= d;
+                }
+                lastAlt = p;
+            }
+        }
+
+        hrMax = new RangeMax(hr);
+        speedMax = new RangeMax(speed);
+    }
+
+    /** Distancia recorrida entre i0 e i1 (m). */
+    double distance(int i0, int i1) {
+        return dist[i1 - from] - dist[i0 - from];
+    }
+
+    /** Tiempo transcurrido entre i0 e i1 (s). */
+    long seconds(int i0, int i1) {
+        return points.ts[i1] - points.ts[i0];
+    }
+
+    /** FC media de los puntos i0..i1, NaN si no hay valores. */
+    double avgHr(int i0, int i1) {
+        int c = hrCount[i1 - from + 1] - hrCount[i0 - from];
+        return c > 0 ? (double) (hrSum[i1 - from + 1] - hrSum[i0 - from]) / c : Double.NaN;
+    }
+
+    /**
+     * FC media de i0..i1 ponderada por tiempo: cada valor vale hasta el
+     * punto siguiente, así los cortes de registro o una frecuencia
+     * variable no sesgan el promedio. NaN si ningún valor cubre tiempo.
+     */
+    double avgHrTimed(int i0, int i1) {
+        long t = hrTime[i1 - from] - hrTime[i0 - from];
+        return t > 0 ? (double) (hrTimeSum[i1 - from] - hrTimeSum[i0 - from]) / t : Double.NaN;
+    }
+
+    /** FC máxima de los puntos i0..i1, NaN si no hay valores. */
+    double maxHr(int i0, int i1) {
+        return present(hrMax.max(i0 - from, i1 - from));
+    }
+
+    /** Velocidad media (distancia / tiempo), NaN si el tiempo es 0. */
+    double avgSpeed(int i0, int i1) {
+        long s = seconds(i0, i1);
+        return s > 0 ? distance(i0, i1) / s : Double.NaN;
+    }
+
+    /** Velocidad máxima registrada, NaN si no hay valores. */
+    double maxSpeed(int i0, int i1) {
+        return present(speedMax.max(i0 - from, i1 - from));
+    }
+
+    /** Si algún punto i0..i1 tiene altitud. */
+    boolean hasAltitude(int i0, int i1) {
+        return altCount[i1 - from + 1] > altCount[i0 - from];
+    }
+
+    /** Ascenso total (m). */
+    double ascent(int i0, int i1) {
+        return ascent[i1 - from] - ascent[i0 - from];
+    }
+
+    /** Descenso total (m). */
+    double descent(int i0, int i1) {
+        return descent[i1 - from] - descent[i0 - from];
+    }
+
+    private static double present(float v) {
+        return v == Float.NEGATIVE_INFINITY ? Double.NaN : v;
+    }
+
+    /**
+     * Máximo de rango sobre una sparse table de bloques: la tabla cubre
+     * bloques completos de BLOCK valores (O(1) por consulta con dos
+     * lecturas) y los extremos parciales se recorren directamente, con
+     * a lo sumo 2 * BLOCK valores. La memoria queda en
+     * O(n / BLOCK · log n) en lugar de O(n log n).
+     */
+    static final class RangeMax {
+        private static final int BLOCK = 16;
+
+        private final float[] v;
+        private final float[][] table;  // table[k][b]: máximo de los bloques b..b+2^k-1
+
+        RangeMax(float[] v) {
+            this.v = v;
+            int blocks = (v.length + BLOCK - 1) / BLOCK;
+            int levels = blocks > 0 ? 32 - Integer.numberOfLeadingZeros(blocks) : 0;
+            table = new float[levels][];
+            if (levels == 0) return;
+
+            table[0] = new float[blocks];
+            for (int b = 0; b < blocks; b++) {
+                table[0][b] = scan(b * BLOCK, Math.min(v.length, (b + 1) * BLOCK) - 1);
+            }
+            for (int k = 1; k < levels; k++) {
+                int half = 1 << (k - 1);
+                float[] prev = table[k - 1];
+                float[] cur = new float[blocks - (1 << k) + 1];
+                for (int b = 0; b < cur.length; b++) {
+                    cur[b] = Math.max(prev[b], prev[b + half]);
+                }
+                table[k] = cur;
+            }
+        }
+
+        /** Máximo de v[i0..i1]. */
+        float max(int i0, int i1) {
+            int b0 = i0 / BLOCK + 1;        // primer bloque completo
+            int b1 = i1 / BLOCK - 1;        // último bloque completo
+            if (b0 > b1) return scan(i0, i1);
+
+            float m = Math.max(scan(i0, b0 * BLOCK - 1), scan((b1 + 1) * BLOCK, i1));
+            int k = 31 - Integer.numberOfLeadingZeros(b1 - b0 + 1);
+            return Math.max(m, Math.max(table[k][b0], table[k][b1 - (1 << k) + 1]));
+        }
+
+        private float scan(int i0, int i1) {
+            float m = Float.NEGATIVE_INFINITY;
+            for (int i = i0; i <= i1; i++) {
+                if (v[i] > m) m = v[i];
+            }
+            return m;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * VectorTrackScan.java
+ *
+ * Recorridos del track con la Vector API (jdk.incubator.vector).
+ *
+ * Se compila solo con el perfil "vector" (Java 17):
+ *   mvn -Pvector package
+ *   java --add-modules jdk.incubator.vector -cp segment-fit-core/target/segment-fit-core-1.0.1.jar:\
+ *       segment-fit-cli/target/segment-fit-cli-1.0.1.jar:fit.jar ar.fit.cli.SegmentFit ...
+ *
+ * Copyright (c) 2026 Daniel Sappa
+ * Licenciado bajo la Licencia MIT.
+ */
+
+package ar.fit;
+
+import java.util.List;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * TrackScan que calcula la distancia plana del kernel equirectangular
+ * para D.length() puntos por instrucción (4 con AVX2, 8 con AVX-512):
+ * carga las semicircunferencias int, las convierte a double y repite
+ * las mismas operaciones de DistanceKernel.Equirectangular, en el mismo
+ * orden. Como la Vector API no fusiona ni reordena operaciones, cada
+ * carril obtiene exactamente el mismo double que el recorrido escalar.
+ *
+ * Con esas cotas se descartan bloques enteros sin salir del vector; los
+ * pocos carriles dudosos (cerca del radio o candidatos a mínimo) siguen
+ * por el camino escalar con haversine, así que el resultado es idéntico
+ * al de TrackScan.Scalar. Con el kernel haversine (polos o
+ * --distance=exact) se delega en la implementación escalar.
+ */
+final class VectorTrackScan implements TrackScan {
+
+    private static final VectorSpecies<Double> D = DoubleVector.SPECIES_PREFERRED;
+
+    /** Enteros con la misma cantidad de carriles que D. */
+    private static final VectorSpecies<Integer> I =
+            VectorSpecies.of(int.class, VectorShape.forBitSize(D.vectorBitSize() / 2));
+
+    private final TrackScan scalar = new TrackScan.Scalar();
+
+    /** Instanciada por reflexión desde TrackScan.vector(). */
+    public VectorTrackScan() {
+        // Falla acá, y no en el primer recorrido, si falta el módulo
+        DoubleVector.zero(D);
+    }
+
+    @Override
+    public SegmentDetector.Nearest nearest(Track pts, DistanceKernel k, int from, int to) {
+        SegmentDetector.Nearest n = new SegmentDetector.Nearest(k);
+        if (!(k instanceof DistanceKernel.Equirectangular)) {
+            return scalar.nearest(pts, k, from, to);
+        }
+        DistanceKernel.Equirectangular e = (DistanceKernel.Equirectangular) n.k;
+
+        int lanes = D.length();
+        int i = from;
+        for (int upper = from + D.loopBound(to - from); i < upper; i += lanes) {
+            DoubleVector f = flat(pts, e, i);
+            DoubleVector lower = f.mul(slack(f, e).neg().add(1.0));
+            // Cota contra el mínimo al inicio del bloque: offer() vuelve
+            // a comparar contra el mínimo actualizado
+            VectorMask<Double> candidates = lower.compare(VectorOperators.LT, n.distance);
+            if (!candidates.anyTrue()) continue;
+            for (int l = candidates.firstTrue(); l < lanes; l++) {
+                if (candidates.laneIsSet(l)) n.offer(i + l, pts.lat(i + l), pts.lon(i + l));
+            }
+        }
+        for (; i < to; i++) {
+            n.offer(i, pts.lat(i), pts.lon(i));
+        }
+        return n;
+    }
+
+    @Override
+    public void passes(Track pts, DistanceKernel k, double radius, int from, int to, List<Integer> idxs) {
+        if (!(k instanceof DistanceKernel.Equirectangular)) {
+            scalar.passes(pts, k, radius, from, to, idxs);
+            return;
+        }
+        DistanceKernel.Equirectangular e = (DistanceKernel.Equirectangular) k;
+
+        int lanes = D.length();
+        int i = from;
+        for (int upper = from + D.loopBound(to - from); i < upper; i += lanes) {
+            DoubleVector f = flat(pts, e, i);
+            DoubleVector s = slack(f, e);
+            // Igual que within(): dentro seguro si f*(1+e) <= r, fuera
+            // seguro si f*(1-e) > r; el resto se decide con haversine
+            VectorMask<Double> maybe = f.mul(s.neg().add(1.0)).compare(VectorOperators.LE, radius);
+            if (!maybe.anyTrue()) continue;
+            VectorMask<Double> inside = f.mul(s.add(1.0)).compare(VectorOperators.LE, radius);
+            for (int l = maybe.firstTrue(); l < lanes; l++) {
+                if (inside.laneIsSet(l)
+                        || maybe.laneIsSet(l) && e.distance(pts.lat(i + l), pts.lon(i + l)) <= radius) {
+                    idxs.add(i + l);
+                }
+            }
+        }
+        for (; i < to; i++) {
+            if (e.within(pts.lat(i), pts.lon(i), radius)) {
+                idxs.add(i);
+            }
+        }
+    }
+
+    /** Equirectangular.flat() de los puntos i .. i + D.length() - 1. */
+    private static DoubleVector flat(Track pts, DistanceKernel.Equirectangular e, int i) {
+        DoubleVector lat = toDouble(IntVector.fromArray(I, pts.lat, i)).mul(Track.DEG);
+        DoubleVector lon = toDouble(IntVector.fromArray(I, pts.lon, i)).mul(Track.DEG);
+
+        DoubleVector dLon = lon.sub(e.refLon);
+        dLon = dLon.blend(dLon.sub(360.0), dLon.compare(VectorOperators.GT, 180.0));
+        dLon = dLon.blend(dLon.add(360.0), dLon.compare(VectorOperators.LT, -180.0));
+        DoubleVector dx = dLon.mul(e.kx);
+        DoubleVector dy = lat.sub(e.refLat).mul(e.ky);
+        return dx.mul(dx).add(dy.mul(dy)).sqrt();
+    }
+
+    /** Equirectangular.slack() por carril. */
+    private static DoubleVector slack(DoubleVector f, DistanceKernel.Equirectangular e) {
+        return f.mul(e.errPerMeter).add(1e-6);
+    }
+
+    private static DoubleVector toDouble(IntVector v) {
+        return (DoubleVector) v.convertShape(VectorOperators.I2D, D, 0);
+    }
+}